@@ -0,0 +1,48 @@
+package org.example.bench;
+
+import org.example.CipherUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование Цезаря и Виженера на текстах разного размера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx12g"})
+public class CipherBenchmark {
+    /** Длина текста в символах: от 10 КБ до 10^9 (String вмещает не больше 2^30 - 1 символов) */
+    @Param({"10240", "1048576", "104857600", "1000000000"})
+    public int chars;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = CorpusGenerator.generate(chars, 1, false);
+    }
+
+    @Benchmark
+    public String encryptCaesar() {
+        return CipherUtils.encryptCaesar(text, 5);
+    }
+
+    @Benchmark
+    public String encryptVigenere() {
+        return CipherUtils.encryptVigenere(text, "КЛЮЧ");
+    }
+}
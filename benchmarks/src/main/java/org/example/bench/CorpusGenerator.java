@@ -0,0 +1,75 @@
+package org.example.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Генератор синтетического русскоподобного текста для бенчмарков.
+ * Буквы выбираются по частотам русского языка, слова разделяются пробелами
+ * и знаками препинания, строки переносятся примерно каждые 80 символов.
+ * Текст уже в верхнем регистре, как после FileHandler.readFile.
+ */
+public final class CorpusGenerator {
+    private static final String LETTERS = "ОЕАИНТСРВЛКМДПУЯЫЬГЗБЧЙХЖШЮЦЩЭФЪЁ";
+    /** Частоты букв LETTERS в русском тексте, в десятых долях процента */
+    private static final int[] WEIGHTS = {
+            110, 85, 80, 74, 67, 63, 55, 47, 45, 44, 35, 32, 30, 28, 26, 20, 19,
+            17, 17, 17, 16, 14, 12, 10, 9, 7, 6, 5, 4, 3, 3, 1, 1
+    };
+    /** Таблица выбора буквы: случайный индекс в таблице дает букву с нужной вероятностью */
+    private static final char[] TABLE = buildTable();
+
+    private CorpusGenerator() {
+    }
+
+    private static char[] buildTable() {
+        int total = 0;
+        for (int weight : WEIGHTS) {
+            total += weight;
+        }
+        char[] table = new char[total];
+        int position = 0;
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            for (int j = 0; j < WEIGHTS[i]; j++) {
+                table[position++] = LETTERS.charAt(i);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Генерирует текст заданной длины. Одинаковые аргументы дают одинаковый текст.
+     *
+     * @param chars - длина текста в символах
+     * @param seed - зерно генератора
+     * @param lineBreaks - вставлять ли переводы строк
+     * @return String - текст
+     */
+    public static String generate(int chars, long seed, boolean lineBreaks) {
+        SplittableRandom random = new SplittableRandom(seed);
+        char[] text = new char[chars];
+        int position = 0;
+        int lineLength = 0;
+        while (position < chars) {
+            int wordLength = 1 + random.nextInt(3) + random.nextInt(4) + random.nextInt(4); // 1..10, чаще 4-6
+            for (int i = 0; i < wordLength && position < chars; i++) {
+                text[position++] = TABLE[random.nextInt(TABLE.length)];
+            }
+            lineLength += wordLength + 1;
+            int punctuation = random.nextInt(100);
+            if (position < chars && punctuation < 7) {
+                text[position++] = ',';
+            } else if (position < chars && punctuation < 12) {
+                text[position++] = '.';
+            }
+            if (position < chars) {
+                if (lineBreaks && lineLength > 80) {
+                    text[position++] = '\n';
+                    lineLength = 0;
+                } else {
+                    text[position++] = ' ';
+                }
+            }
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.bench;
+
+import org.example.CaesarCipherAnalyzer;
+import org.example.CipherUtils;
+import org.example.FrequencyAnalyzer;
+import org.example.VigenereCipherAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Криптоанализ и частотный анализ на текстах разного размера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx12g"})
+public class CryptanalysisBenchmark {
+    private static final String VIGENERE_KEY = "КРИПТОАНАЛИЗ";
+
+    /** Длина текста в символах: от 10 КБ до 10^9 (String вмещает не больше 2^30 - 1 символов) */
+    @Param({"10240", "1048576", "104857600", "1000000000"})
+    public int chars;
+
+    private String plainText;
+    private String caesarCipherText;
+    private String vigenereCipherText;
+
+    @Setup
+    public void setUp() {
+        plainText = CorpusGenerator.generate(chars, 2, false);
+        caesarCipherText = CipherUtils.encryptCaesar(plainText, 5);
+        vigenereCipherText = CipherUtils.encryptVigenere(plainText, VIGENERE_KEY);
+    }
+
+    @Benchmark
+    public int findCaesarShift() {
+        return CaesarCipherAnalyzer.findCaesarShift(caesarCipherText);
+    }
+
+    @Benchmark
+    public int findKeyLength() {
+        return VigenereCipherAnalyzer.findKeyLength(vigenereCipherText);
+    }
+
+    @Benchmark
+    public String findKey() {
+        return VigenereCipherAnalyzer.findKey(vigenereCipherText, VIGENERE_KEY.length());
+    }
+
+    @Benchmark
+    public FrequencyAnalyzer frequencyAnalyzer() {
+        return new FrequencyAnalyzer(plainText);
+    }
+}
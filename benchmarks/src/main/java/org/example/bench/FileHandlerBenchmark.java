@@ -0,0 +1,64 @@
+package org.example.bench;
+
+import org.example.FileHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение файла через FileHandler.readFile.
+ * Файл создается в каталоге входных файлов FileHandler (относительно рабочего
+ * каталога) и удаляется после измерений.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx12g", "-Dfile.encoding=UTF-8"})
+public class FileHandlerBenchmark {
+    /** Длина текста в символах: от 10 КБ до 10^9 (String вмещает не больше 2^30 - 1 символов) */
+    @Param({"10240", "1048576", "104857600", "1000000000"})
+    public int chars;
+
+    private String fileName;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileName = "benchmark-" + chars + ".txt";
+        file = FileHandler.inputPath(fileName);
+        Files.createDirectories(file.getParent());
+        // Через Writer, а не getBytes: для кириллицы getBytes выделяет буфер по 3 байта на символ,
+        // что при 10^9 символов больше максимального размера массива
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(CorpusGenerator.generate(chars, 3, true));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String readFile() {
+        return FileHandler.readFile(fileName);
+    }
+}
@@ -0,0 +1,409 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Локальный HTTP-сервер анализа (com.sun.net.httpserver из JDK).
+ *
+ * Запуск java ... Main на каждый текст каждый раз платит за старт JVM, загрузку
+ * классов, статические таблицы CipherUtils и CaesarCipherAnalyzer и холодный JIT;
+ * для коротких текстов это дольше самого анализа. Сервер запускается один раз,
+ * до приема запросов прогревает все операции на образце текста и дальше держит
+ * таблицы (в том числе QuadgramTable) и скомпилированный код в памяти.
+ *
+ * Текст передается телом POST-запроса в UTF-8, переводится в верхний регистр
+ * (как FileHandler.readFile) и кодируется в EncodedText. Конечные точки:
+ * <pre>
+ * POST /encrypt?cipher=caesar&amp;shift=5      шифротекст (text/plain)
+ * POST /encrypt?cipher=vigenere&amp;key=КЛЮЧ
+ * POST /decrypt?...                         те же параметры, открытый текст
+ * POST /crack/caesar                        {"shift":..,"confidence":..,"text":..}
+ * POST /crack/vigenere[?keyLength=4]        {"keyLength":..,"key":..,"text":..}
+ * POST /frequency[?n=1&amp;top=10]              {"n":..,"total":..,"top":[{"gram":..,"count":..}]}, top до MAX_TOP
+ * GET  /stats                               задержки по конечным точкам (p50/p90/p99/max, мс)
+ * </pre>
+ *
+ * Каждый запрос выполняется прямо в потоке пула соединений (по числу ядер,
+ * не меньше 4): операции независимы и общей работы между запросами нет,
+ * поэтому передача в отдельный поток только добавила бы ожидание.
+ * Тело запроса ограничено MAX_BODY_BYTES (иначе 413).
+ */
+public final class AnalysisServer {
+    private static final Logger LOGGER = Logger.getLogger(AnalysisServer.class.getName());
+    /** Порт по умолчанию для --server */
+    public static final int DEFAULT_PORT = 8080;
+    /** Максимальный размер тела запроса */
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    /** Количество задержек, по которым считаются процентили каждой конечной точки */
+    private static final int LATENCY_SAMPLES = 8192;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int WARMUP_SAMPLE_CHARS = 2000;
+    private static final int DEFAULT_TOP = 10;
+    /** Наибольшее значение параметра top у /frequency */
+    private static final int MAX_TOP = 10_000;
+
+    private final int port;
+    private final QuadgramTable quadgrams;
+    private final Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+    private HttpServer server;
+    private ExecutorService connections;
+
+    /** Операция конечной точки: текст запроса и параметры -> тело ответа */
+    private interface Operation {
+        Response apply(EncodedText text, Map<String, String> params);
+    }
+
+    /** Тело запроса больше MAX_BODY_BYTES */
+    private static final class PayloadTooLargeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        PayloadTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Response {
+        final String contentType;
+        final String body;
+
+        Response(String contentType, String body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response text(CharSequence body) {
+            return new Response("text/plain; charset=utf-8", body.toString());
+        }
+
+        static Response json(String body) {
+            return new Response("application/json; charset=utf-8", body);
+        }
+    }
+
+    /**
+     * @param port - порт (0 - любой свободный)
+     * @param quadgrams - таблица квадграмм для уточнения ключа Виженера
+     */
+    public AnalysisServer(int port, QuadgramTable quadgrams) {
+        this.port = port;
+        this.quadgrams = quadgrams;
+    }
+
+    /**
+     * Прогревает операции и начинает принимать запросы на 127.0.0.1.
+     */
+    public void start() {
+        warmUp();
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка запуска сервера на порту " + port, e);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        connections = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "analysis-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(connections);
+        register("/encrypt", (text, params) -> Response.text(cipher(text, params, false)));
+        register("/decrypt", (text, params) -> Response.text(cipher(text, params, true)));
+        register("/crack/caesar", (text, params) -> crackCaesar(text));
+        register("/crack/vigenere", this::crackVigenere);
+        register("/frequency", AnalysisServer::frequency);
+        LatencyRecorder statsLatency = recorder("/stats");
+        server.createContext("/stats", exchange -> {
+            long start = System.nanoTime();
+            send(exchange, 200, Response.json(statsJson()));
+            statsLatency.record(System.nanoTime() - start, false);
+        });
+        server.start();
+        LOGGER.info("Сервер анализа запущен: http://127.0.0.1:" + getPort() + "/");
+    }
+
+    /**
+     * Останавливает сервер, дожидаясь завершения текущих запросов не дольше секунды.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            connections.shutdown();
+            LOGGER.info("Сервер анализа остановлен");
+        }
+    }
+
+    /** @return int - порт, на котором сервер принимает запросы */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private LatencyRecorder recorder(String path) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        synchronized (latencies) {
+            latencies.put(path, recorder);
+        }
+        return recorder;
+    }
+
+    private void register(String path, Operation operation) {
+        LatencyRecorder latency = recorder(path);
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            boolean error = true;
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    send(exchange, 405, error("Нужен POST-запрос с текстом в теле"));
+                    return;
+                }
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                String body = readBody(exchange);
+                EncodedText text = new EncodedText.Builder(body.length(), true)
+                        .append(body.toCharArray(), 0, body.length()).build();
+                send(exchange, 200, operation.apply(text, params));
+                error = false;
+            } catch (RuntimeException | Error e) {
+                sendError(exchange, e);
+            } finally {
+                latency.record(System.nanoTime() - start, error);
+                exchange.close();
+            }
+        });
+    }
+
+    private static void sendError(HttpExchange exchange, Throwable e) throws IOException {
+        if (e instanceof IllegalArgumentException) {
+            send(exchange, 400, error(e.getMessage() != null ? e.getMessage() : e.toString()));
+        } else if (e instanceof PayloadTooLargeException) {
+            send(exchange, 413, error(e.getMessage()));
+        } else {
+            LOGGER.log(Level.SEVERE, "Ошибка обработки запроса " + exchange.getRequestURI(), e);
+            send(exchange, 500, error(String.valueOf(e.getMessage())));
+        }
+    }
+
+    private static Response error(String message) {
+        return Response.json("{\"error\":" + Json.quote(message) + "}");
+    }
+
+    private static void send(HttpExchange exchange, int status, Response response) throws IOException {
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null && Long.parseLong(declared.trim()) > MAX_BODY_BYTES) {
+            throw new PayloadTooLargeException("Тело запроса больше " + MAX_BODY_BYTES + " байт");
+        }
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            if (bytes.size() + read > MAX_BODY_BYTES) {
+                throw new PayloadTooLargeException("Тело запроса больше " + MAX_BODY_BYTES + " байт");
+            }
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + name + " должен быть целым числом: " + value);
+        }
+    }
+
+    // Операции конечных точек
+
+    private static EncodedText cipher(EncodedText text, Map<String, String> params, boolean decrypt) {
+        String cipher = params.getOrDefault("cipher", "caesar");
+        if (cipher.equals("caesar")) {
+            if (!params.containsKey("shift")) {
+                throw new IllegalArgumentException("Для шифра Цезаря нужен параметр shift");
+            }
+            int shift = intParam(params, "shift", 0);
+            return decrypt ? CaesarCipherAnalyzer.decrypt(text, shift) : CipherUtils.encryptCaesar(text, shift);
+        }
+        if (cipher.equals("vigenere")) {
+            String key = params.get("key");
+            if (key == null) {
+                throw new IllegalArgumentException("Для шифра Виженера нужен параметр key");
+            }
+            key = key.toUpperCase();
+            return decrypt ? VigenereCipherAnalyzer.decrypt(text, key) : CipherUtils.encryptVigenere(text, key);
+        }
+        throw new IllegalArgumentException("Неизвестный шифр: " + cipher);
+    }
+
+    private static Response crackCaesar(EncodedText text) {
+        CaesarCipherAnalyzer.ShiftCandidate best = CaesarCipherAnalyzer.rankShifts(text).get(0);
+        int shift = best.getShift();
+        return Response.json("{\"shift\":" + shift
+                + ",\"confidence\":" + String.format(Locale.ROOT, "%.4f", best.getConfidence())
+                + ",\"text\":" + Json.quote(CaesarCipherAnalyzer.decrypt(text, shift).toString()) + "}");
+    }
+
+    private Response crackVigenere(EncodedText text, Map<String, String> params) {
+        if (text.letterCount() == 0) {
+            throw new IllegalArgumentException("В тексте нет букв алфавита");
+        }
+        int keyLength = params.containsKey("keyLength")
+                ? intParam(params, "keyLength", 0) : VigenereCipherAnalyzer.findKeyLength(text);
+        if (keyLength < 1) {
+            throw new IllegalArgumentException("Длина ключа должна быть положительной: " + keyLength);
+        }
+        String key = VigenereCipherAnalyzer.findKey(text, keyLength);
+        if (quadgrams != null) {
+            key = VigenereCipherAnalyzer.refineKey(text, key, quadgrams);
+        }
+        return Response.json("{\"keyLength\":" + keyLength + ",\"key\":" + Json.quote(key)
+                + ",\"text\":" + Json.quote(VigenereCipherAnalyzer.decrypt(text, key).toString()) + "}");
+    }
+
+    private static Response frequency(EncodedText text, Map<String, String> params) {
+        int n = intParam(params, "n", 1);
+        int top = intParam(params, "top", DEFAULT_TOP);
+        if (n < 1 || n > NGramCounter.MAX_N) {
+            throw new IllegalArgumentException("Длина n-граммы должна быть от 1 до " + NGramCounter.MAX_N + ": " + n);
+        }
+        if (top < 0 || top > MAX_TOP) {
+            throw new IllegalArgumentException("Параметр top должен быть от 0 до " + MAX_TOP + ": " + top);
+        }
+        NGramCounter counter = new FrequencyAnalyzer(text).getCounter(n);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"n\":").append(n).append(",\"total\":").append(counter.total()).append(",\"top\":[");
+        List<Map.Entry<String, Integer>> entries = counter.top(top);
+        for (int i = 0; i < entries.size(); i++) {
+            json.append(i > 0 ? "," : "").append("{\"gram\":").append(Json.quote(entries.get(i).getKey()))
+                    .append(",\"count\":").append(entries.get(i).getValue()).append('}');
+        }
+        return Response.json(json.append("]}").toString());
+    }
+
+    /**
+     * Прогрев: каждая операция многократно выполняется на образце текста,
+     * чтобы первые запросы не ждали загрузки классов и компиляции JIT.
+     */
+    private void warmUp() {
+        long start = System.nanoTime();
+        String sample;
+        try {
+            sample = FileHandler.readFile("input.txt");
+        } catch (RuntimeException e) {
+            sample = CipherUtils.ALPHABET.repeat(WARMUP_SAMPLE_CHARS / CipherUtils.ALPHABET.length() + 1);
+        }
+        sample = sample.substring(0, Math.min(sample.length(), WARMUP_SAMPLE_CHARS));
+        EncodedText plain = EncodedText.of(sample);
+        Map<String, String> caesar = new HashMap<>();
+        caesar.put("shift", "5");
+        Map<String, String> vigenere = new HashMap<>();
+        vigenere.put("cipher", "vigenere");
+        vigenere.put("key", "КЛЮЧ");
+        Map<String, String> frequency = new HashMap<>();
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            EncodedText caesarText = cipher(plain, caesar, false);
+            cipher(caesarText, caesar, true);
+            crackCaesar(caesarText);
+            EncodedText vigenereText = cipher(plain, vigenere, false);
+            cipher(vigenereText, vigenere, true);
+            crackVigenere(vigenereText, new HashMap<>());
+            frequency.put("n", String.valueOf(round % NGramCounter.MAX_N + 1));
+            frequency(plain, frequency);
+        }
+        LOGGER.info(String.format(Locale.ROOT, "Прогрев сервера: %d проходов за %.0f мс",
+                WARMUP_ROUNDS, (System.nanoTime() - start) / 1e6));
+    }
+
+    private String statsJson() {
+        StringBuilder json = new StringBuilder("{");
+        synchronized (latencies) {
+            boolean first = true;
+            for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+                json.append(first ? "" : ",").append(Json.quote(entry.getKey())).append(':').append(entry.getValue().toJson());
+                first = false;
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Задержки одной конечной точки: кольцевой буфер последних LATENCY_SAMPLES
+     * значений, процентили считаются сортировкой копии при запросе /stats.
+     */
+    private static final class LatencyRecorder {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private long count;
+        private long errors;
+
+        synchronized void record(long nanos, boolean error) {
+            samples[(int) (count % LATENCY_SAMPLES)] = nanos;
+            count++;
+            if (error) {
+                errors++;
+            }
+        }
+
+        synchronized String toJson() {
+            int size = (int) Math.min(count, LATENCY_SAMPLES);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT,
+                    "{\"count\":%d,\"errors\":%d,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}",
+                    count, errors, percentile(sorted, 0.50), percentile(sorted, 0.90),
+                    percentile(sorted, 0.99), size > 0 ? sorted[size - 1] / 1e6 : 0.0);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
\ No newline at end of file
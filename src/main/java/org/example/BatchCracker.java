@@ -0,0 +1,228 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Пакетный криптоанализ каталога шифротекстов.
+ * Для каждого файла в отдельной задаче ищутся сдвиг Цезаря и ключ Виженера
+ * (CaesarCipherAnalyzer.findCaesarShift, VigenereCipherAnalyzer.findKey, при наличии
+ * таблицы квадграмм - VigenereCipherAnalyzer.refineKey),
+ * результат сразу дописывается строкой в общий JSONL-файл.
+ *
+ * Задачи выполняются в виртуальных потоках, если JVM их поддерживает (Java 21+),
+ * иначе - в пуле потоков по числу ядер. Каталог обходится лениво, а разрешение
+ * семафора берется до отправки задачи и возвращается по ее завершении: задач
+ * в очереди и в работе (а значит, и открытых файлов) не больше maxOpenFiles,
+ * поэтому число файлов не влияет на расход памяти. Каждая строка результата
+ * сразу сбрасывается на диск.
+ */
+public final class BatchCracker {
+    private static final Logger LOGGER = Logger.getLogger(BatchCracker.class.getName());
+    /** Ограничение на одновременно открытые файлы по умолчанию */
+    public static final int DEFAULT_MAX_OPEN_FILES = 64;
+    /** Период вывода промежуточной скорости, секунд */
+    private static final int PROGRESS_PERIOD_SECONDS = 5;
+
+    private final int maxOpenFiles;
+    /** Разрешения на задачи, отправленные в исполнитель и еще не завершенные */
+    private final Semaphore inFlight;
+    private final QuadgramTable quadgrams;
+
+    /**
+     * Итог пакетной обработки.
+     */
+    public static final class Result {
+        private final long files;
+        private final long failures;
+        private final long elapsedNanos;
+
+        Result(long files, long failures, long elapsedNanos) {
+            this.files = files;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** @return long - количество обработанных файлов, включая ошибки */
+        public long getFiles() {
+            return files;
+        }
+
+        /** @return long - количество файлов, которые не удалось обработать */
+        public long getFailures() {
+            return failures;
+        }
+
+        /** @return double - время работы, секунд */
+        public double getSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        /** @return double - пропускная способность, файлов в секунду */
+        public double getFilesPerSecond() {
+            return elapsedNanos > 0 ? files * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("файлов %d (ошибок %d) за %.2f с, %.1f файлов/с",
+                    files, failures, getSeconds(), getFilesPerSecond());
+        }
+    }
+
+    /**
+     * @param maxOpenFiles - наибольшее количество одновременно открытых файлов
+     */
+    public BatchCracker(int maxOpenFiles) {
+        this(maxOpenFiles, null);
+    }
+
+    /**
+     * @param maxOpenFiles - наибольшее количество одновременно открытых файлов
+     * @param quadgrams - таблица для уточнения ключей Виженера или null, чтобы не уточнять
+     */
+    public BatchCracker(int maxOpenFiles, QuadgramTable quadgrams) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("Ограничение открытых файлов должно быть положительным: " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.inFlight = new Semaphore(maxOpenFiles);
+        this.quadgrams = quadgrams;
+    }
+
+    /**
+     * Обрабатывает все обычные файлы каталога (рекурсивно).
+     *
+     * @param directory - каталог с шифротекстами
+     * @param output - JSONL-файл результатов (перезаписывается)
+     * @return Result - итог обработки
+     */
+    public Result run(Path directory, Path output) {
+        long start = System.nanoTime();
+        // Счетчики свои у каждого запуска: повторный run() на том же объекте начинает с нуля
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicReference<IOException> writeError = new AtomicReference<>();
+        ExecutorService executor = newExecutor();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> LOGGER.info(String.format("Обработано файлов: %d, %.1f файлов/с",
+                        processed.get(), processed.get() * 1e9 / (System.nanoTime() - start))),
+                PROGRESS_PERIOD_SECONDS, PROGRESS_PERIOD_SECONDS, TimeUnit.SECONDS);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+             Stream<Path> files = Files.walk(directory)) {
+            Iterator<Path> iterator = files.filter(Files::isRegularFile).iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                // Обход ждет, пока в работе меньше maxOpenFiles задач
+                inFlight.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            String line = crack(file, failed);
+                            // Строки пишутся по мере готовности; запись одной строки атомарна
+                            synchronized (writer) {
+                                try {
+                                    writer.write(line);
+                                    writer.newLine();
+                                    writer.flush();
+                                } catch (IOException e) {
+                                    writeError.compareAndSet(null, e);
+                                }
+                            }
+                            processed.incrementAndGet();
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Ждем завершения всех задач
+            }
+            if (writeError.get() != null) {
+                throw writeError.get();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Ошибка пакетной обработки каталога: " + directory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Пакетная обработка прервана", e);
+        } finally {
+            executor.shutdownNow();
+            progress.shutdownNow();
+        }
+        Result result = new Result(processed.get(), failed.get(), System.nanoTime() - start);
+        LOGGER.info("Пакетная обработка завершена: " + result);
+        return result;
+    }
+
+    /**
+     * Взламывает один файл и возвращает строку JSONL с результатом или ошибкой;
+     * ошибка увеличивает счетчик failed текущего запуска.
+     */
+    private String crack(Path file, AtomicLong failed) {
+        long start = System.nanoTime();
+        try {
+            String cipherText = FileHandler.readText(file);
+            CaesarCipherAnalyzer.ShiftCandidate caesar = CaesarCipherAnalyzer.rankShifts(cipherText).get(0);
+            int keyLength = VigenereCipherAnalyzer.findKeyLength(cipherText);
+            String vigenereKey = VigenereCipherAnalyzer.findKey(cipherText, keyLength);
+            if (quadgrams != null) {
+                vigenereKey = VigenereCipherAnalyzer.refineKey(cipherText, vigenereKey, quadgrams);
+            }
+            return "{\"file\":" + Json.quote(file.toString())
+                    + ",\"chars\":" + cipherText.length()
+                    + ",\"caesarShift\":" + caesar.getShift()
+                    + ",\"caesarConfidence\":" + String.format(Locale.ROOT, "%.4f", caesar.getConfidence())
+                    + ",\"vigenereKeyLength\":" + keyLength
+                    + ",\"vigenereKey\":" + Json.quote(vigenereKey)
+                    + ",\"millis\":" + (System.nanoTime() - start) / 1_000_000 + "}";
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Ошибка обработки файла: " + file, e);
+            return "{\"file\":" + Json.quote(file.toString()) + ",\"error\":" + Json.quote(String.valueOf(e.getMessage())) + "}";
+        }
+    }
+
+    /**
+     * Виртуальные потоки, если они есть в JVM (проект собирается под Java 11, поэтому
+     * метод ищется через reflection), иначе пул потоков по числу ядер.
+     */
+    private ExecutorService newExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOGGER.info("Пакетная обработка в виртуальных потоках, открытых файлов не больше " + maxOpenFiles);
+            return executor;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            LOGGER.info("Виртуальные потоки недоступны, пул из " + threads + " потоков, открытых файлов не больше " + maxOpenFiles);
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+}
@@ -1,43 +1,105 @@
 package org.example;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Класс для криптоанализа текста, зашифрованного шифром Цезаря.
  * Реализует методы для определения сдвига (ключа) и расшифровки текста
  * на основе частотного анализа русского языка.
+ *
+ * Сдвиг подбирается по критерию хи-квадрат: гистограмма букв шифротекста,
+ * сдвинутая назад на shift, сравнивается с частотами всех 33 букв языка.
+ * Текст проходится один раз (только гистограмма букв), а оценки всех 33
+ * сдвигов считаются по заранее вычисленной матрице 33x33.
  */
 public class CaesarCipherAnalyzer {
 
     /**
-     * Частотная таблица букв русского языка.
-     * Содержит вероятности появления букв в типичном русском тексте.
-     * Инициализируется статически через метод initRussianFreq().
+     * Частоты букв русского языка в порядке CipherUtils.ALPHABET (А, Б, ..., Я).
+     * Сумма равна 1 с точностью до округления.
      */
-    private static final Map<Character, Double> RUSSIAN_FREQ = initRussianFreq();
+    private static final double[] RUSSIAN_FREQ = {
+            0.07998, 0.01592, 0.04533, 0.01687, 0.02977, 0.08483, // А Б В Г Д Е
+            0.00013, 0.00940, 0.01641, 0.07367, 0.01208, 0.03486, // Ё Ж З И Й К
+            0.04343, 0.03203, 0.06700, 0.10983, 0.02804, 0.04746, // Л М Н О П Р
+            0.05473, 0.06318, 0.02615, 0.00267, 0.00966, 0.00486, // С Т У Ф Х Ц
+            0.01450, 0.00718, 0.00361, 0.00037, 0.01898, 0.01735, // Ч Ш Щ Ъ Ы Ь
+            0.00331, 0.00639, 0.02001                             // Э Ю Я
+    };
 
     /**
-     * Инициализирует таблицу частот букв русского языка.
-     * Создает HashMap и заполняет его значениями для наиболее частых букв.
-     * Значения взяты из статистики русского языка (например, 'О' - самая частая буква).
-     *
-     * @return Map<Character, Double> - таблица частот букв
+     * Нижняя граница ожидаемой частоты в хи-квадрат. Ё и Ъ почти не встречаются,
+     * и без границы одна такая буква в коротком тексте перевешивала бы все остальные.
      */
-    private static Map<Character, Double> initRussianFreq() {
-        Map<Character, Double> freq = new HashMap<>();
-        freq.put('О', 0.1097); // Буква 'О' встречается в 10.97% случаев
-        freq.put('Е', 0.0845);
-        freq.put('А', 0.0801);
-        freq.put('И', 0.0735);
-        freq.put('Н', 0.0670);
-        freq.put('Т', 0.0632);
-        freq.put('С', 0.0547);
-        freq.put('Р', 0.0453);
-        freq.put('В', 0.0435);
-        freq.put('Л', 0.0348); // Дополнены частоты для примера
-        // Примечание: таблица неполная, для точного анализа нужно добавить все буквы алфавита
-        return freq;
+    private static final double MIN_EXPECTED_FREQ = 0.001;
+
+    /**
+     * Матрица оценки: INVERSE_FREQ[shift][c] = 1 / p((c - shift) mod 33), где c - буква
+     * шифротекста. Хи-квадрат для сдвига shift при гистограмме O и N буквах:
+     * sum((O_c - N p)^2 / (N p)) = sum(O_c^2 * INVERSE_FREQ[shift][c]) / N - N.
+     */
+    private static final double[][] INVERSE_FREQ = initInverseFreq();
+
+    /**
+     * Температура softmax для уверенности. Хи-квадрат по коротким текстам
+     * разбросан сильнее теоретического, и при температуре 1 неверные сдвиги
+     * получали уверенность 0.8-0.9; при 4 уверенность на фрагментах из
+     * largeText.txt длиной 10-60 букв примерно равна доле верных ответов.
+     */
+    private static final double CONFIDENCE_TEMPERATURE = 4;
+
+    private static double[][] initInverseFreq() {
+        int size = CipherKernel.SIZE;
+        double[][] matrix = new double[size][size];
+        for (int shift = 0; shift < size; shift++) {
+            for (int c = 0; c < size; c++) {
+                double expected = RUSSIAN_FREQ[(c - shift + size) % size];
+                matrix[shift][c] = 1.0 / Math.max(expected, MIN_EXPECTED_FREQ);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Кандидат сдвига с оценкой.
+     */
+    public static final class ShiftCandidate {
+        private final int shift;
+        private final double chiSquared;
+        private final double confidence;
+
+        ShiftCandidate(int shift, double chiSquared, double confidence) {
+            this.shift = shift;
+            this.chiSquared = chiSquared;
+            this.confidence = confidence;
+        }
+
+        /** @return int - сдвиг (ключ шифра) */
+        public int getShift() {
+            return shift;
+        }
+
+        /** @return double - хи-квадрат расшифровки относительно частот языка (меньше - лучше) */
+        public double getChiSquared() {
+            return chiSquared;
+        }
+
+        /**
+         * @return double - уверенность от 0 до 1: softmax(-chiSquared / (2 * CONFIDENCE_TEMPERATURE))
+         * по всем 33 сдвигам; сумма по всем сдвигам равна 1
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d (хи-квадрат %.1f, уверенность %.3f)", shift, chiSquared, confidence);
+        }
     }
 
     /**
@@ -48,36 +110,108 @@ public class CaesarCipherAnalyzer {
      * @return int - найденный сдвиг (ключ шифра)
      */
     public static int findCaesarShift(String cipherText) {
-        // Создаем объект FrequencyAnalyzer для подсчета частот букв в шифротексте
-        FrequencyAnalyzer analyzer = new FrequencyAnalyzer(cipherText);
-        // Получаем вероятности появления каждой буквы в шифротексте
-        Map<Character, Double> cipherFreq = analyzer.getLetterProbabilities();
-
-        // Переменные для поиска минимальной разницы и лучшего сдвига
-        double minDiff = Double.MAX_VALUE; // Инициализация максимальным значением для поиска минимума
-        int bestShift = 0;
-
-        // Перебираем все возможные сдвиги (от 0 до длины алфавита)
-        for (int shift = 0; shift < CipherUtils.ALPHABET.length(); shift++) {
-            double diff = 0; // Сумма разностей частот для текущего сдвига
-            for (Map.Entry<Character, Double> entry : cipherFreq.entrySet()) {
-                // Сдвигаем букву шифротекста назад на текущий shift
-                // Используем модульную арифметику для корректного перехода через алфавит
-                char shiftedChar = CipherUtils.indexToChar.get(
-                        (CipherUtils.charToIndex.get(entry.getKey()) - shift + CipherUtils.ALPHABET.length()) % CipherUtils.ALPHABET.length()
-                );
-                // Получаем ожидаемую частоту для этой буквы в русском языке (0, если буквы нет в таблице)
-                double expectedFreq = RUSSIAN_FREQ.getOrDefault(shiftedChar, 0.0);
-                // Добавляем абсолютную разницу между реальной и ожидаемой частотой
-                diff += Math.abs(expectedFreq - entry.getValue());
+        return rankShifts(cipherText).get(0).getShift();
+    }
+
+    /**
+     * Определяет сдвиг шифра Цезаря для закодированного текста.
+     *
+     * @param cipherText - зашифрованный текст для анализа
+     * @return int - найденный сдвиг (ключ шифра)
+     */
+    public static int findCaesarShift(EncodedText cipherText) {
+        return rankShifts(cipherText).get(0).getShift();
+    }
+
+    /**
+     * Определяет сдвиг шифра Цезаря по готовой гистограмме букв, например
+     * по окну OnlineFrequencyAnalyzer или по столбцу шифра Виженера.
+     *
+     * @param letterCounts - количество каждой буквы по индексу алфавита
+     * @return int - найденный сдвиг (ключ шифра)
+     */
+    public static int findCaesarShift(int[] letterCounts) {
+        return rankShifts(letterCounts).get(0).getShift();
+    }
+
+    /**
+     * Оценивает все 33 сдвига для текста за один проход по нему.
+     *
+     * @param cipherText - зашифрованный текст
+     * @return List<ShiftCandidate> - все сдвиги от лучшего к худшему
+     */
+    public static List<ShiftCandidate> rankShifts(CharSequence cipherText) {
+        return rankShifts(letterHistogram(cipherText));
+    }
+
+    /**
+     * Оценивает все 33 сдвига по гистограмме букв.
+     *
+     * @param letterCounts - количество каждой буквы по индексу алфавита
+     * @return List<ShiftCandidate> - все сдвиги от лучшего к худшему
+     */
+    public static List<ShiftCandidate> rankShifts(int[] letterCounts) {
+        int size = CipherKernel.SIZE;
+        if (letterCounts.length != size) {
+            throw new IllegalArgumentException("Гистограмма должна содержать " + size + " значения: " + letterCounts.length);
+        }
+        long total = 0;
+        double[] squares = new double[size];
+        for (int c = 0; c < size; c++) {
+            total += letterCounts[c];
+            squares[c] = (double) letterCounts[c] * letterCounts[c];
+        }
+        double[] chiSquared = new double[size];
+        double best = Double.MAX_VALUE;
+        for (int shift = 0; shift < size; shift++) {
+            if (total > 0) {
+                double sum = 0;
+                double[] row = INVERSE_FREQ[shift];
+                for (int c = 0; c < size; c++) {
+                    sum += squares[c] * row[c];
+                }
+                chiSquared[shift] = sum / total - total;
+            }
+            best = Math.min(best, chiSquared[shift]);
+        }
+        // Softmax считается от разницы с лучшим значением, чтобы exp не обнулился
+        double[] weights = new double[size];
+        double weightSum = 0;
+        for (int shift = 0; shift < size; shift++) {
+            weights[shift] = Math.exp(-(chiSquared[shift] - best) / (2 * CONFIDENCE_TEMPERATURE));
+            weightSum += weights[shift];
+        }
+        List<ShiftCandidate> candidates = new ArrayList<>(size);
+        for (int shift = 0; shift < size; shift++) {
+            candidates.add(new ShiftCandidate(shift, chiSquared[shift], weights[shift] / weightSum));
+        }
+        candidates.sort(Comparator.comparingDouble(ShiftCandidate::getChiSquared).thenComparingInt(ShiftCandidate::getShift));
+        return Collections.unmodifiableList(candidates);
+    }
+
+    /**
+     * Считает буквы алфавита в тексте; остальные символы пропускаются.
+     *
+     * @param text - текст
+     * @return int[] - количество каждой буквы по индексу алфавита
+     */
+    public static int[] letterHistogram(CharSequence text) {
+        int[] counts = new int[CipherKernel.SIZE];
+        if (text instanceof EncodedText) {
+            for (byte index : ((EncodedText) text).indexArray()) {
+                if (index >= 0) {
+                    counts[index]++;
+                }
             }
-            // Если текущая разница меньше минимальной, обновляем лучший сдвиг
-            if (diff < minDiff) {
-                minDiff = diff;
-                bestShift = shift;
+        } else {
+            for (int i = 0; i < text.length(); i++) {
+                int index = CipherKernel.indexOf(text.charAt(i));
+                if (index >= 0) {
+                    counts[index]++;
+                }
             }
         }
-        return bestShift; // Возвращаем найденный сдвиг
+        return counts;
     }
 
     /**
@@ -88,19 +222,20 @@ public class CaesarCipherAnalyzer {
      * @return String - расшифрованный текст
      */
     public static String decrypt(String cipherText, int shift) {
-        StringBuilder result = new StringBuilder();
-        // Проходим по каждому символу шифротекста
-        for (char c : cipherText.toCharArray()) {
-            if (CipherUtils.charToIndex.containsKey(c)) {
-                // Если символ есть в алфавите, сдвигаем его назад на shift
-                // + CipherUtils.ALPHABET.length() предотвращает отрицательные индексы
-                int index = (CipherUtils.charToIndex.get(c) - shift + CipherUtils.ALPHABET.length()) % CipherUtils.ALPHABET.length();
-                result.append(CipherUtils.indexToChar.get(index));
-            } else {
-                // Если символа нет в алфавите (например, знак препинания), оставляем его без изменений
-                result.append(c);
-            }
-        }
-        return result.toString(); // Возвращаем расшифрованный текст
+        char[] chars = cipherText.toCharArray();
+        // Расшифровка - это сдвиг в обратную сторону; символы вне алфавита ядро оставляет без изменений
+        CipherKernel.caesar(chars, 0, chars.length, -shift);
+        return new String(chars); // Возвращаем расшифрованный текст
+    }
+
+    /**
+     * Расшифровывает закодированный текст, зашифрованный шифром Цезаря.
+     *
+     * @param cipherText - зашифрованный текст
+     * @param shift - сдвиг, используемый для шифрования
+     * @return EncodedText - расшифрованный текст
+     */
+    public static EncodedText decrypt(EncodedText cipherText, int shift) {
+        return cipherText.caesar(-shift);
     }
 }
\ No newline at end of file
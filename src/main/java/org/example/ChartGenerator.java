@@ -5,18 +5,51 @@ import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
 import org.jfree.data.category.DefaultCategoryDataset;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 import java.util.logging.Level;
+import java.util.zip.CRC32;
 
 /**
  * Класс для генерации гистограмм с использованием библиотеки JFreeChart.
  * Создает диаграммы частот (например, букв или биграмм) и сохраняет их в PNG-файлы.
+ *
+ * В каждый PNG записывается текстовый блок tEXt с SHA-256 от заголовка, данных
+ * и размеров диаграммы. Если в FileOutput уже лежит файл с тем же ключом,
+ * диаграмма не рисуется и не кодируется повторно.
  */
 public class ChartGenerator {
     private static final Logger LOGGER = Logger.getLogger(ChartGenerator.class.getName());
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    /** Ключевое слово блока tEXt с ключом кэша */
+    private static final String CACHE_KEYWORD = "CryptoAnalyzer-Render-Key";
+    /** Меняется при изменении оформления диаграмм, чтобы старые файлы считались устаревшими */
+    private static final int RENDER_VERSION = 1;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /** Ключ кэша всегда ищется в начале файла, сразу после IHDR */
+    private static final int HEADER_PROBE_BYTES = 256;
+
+    // Отдельный поток отрисовки: анализ продолжается, пока рисуются диаграммы
+    private static final ExecutorService RENDER_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chart-render");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Генерирует гистограмму и сохраняет её в файл.
@@ -28,6 +61,13 @@ public class ChartGenerator {
     public static void generateChart(String title, List<Map.Entry<?, Integer>> data, String fileName) {
         LOGGER.setLevel(Level.INFO); // Устанавливаем уровень логирования
 
+        String cacheKey = cacheKey(title, data, WIDTH, HEIGHT);
+        Path target = FileHandler.outputPath(fileName);
+        if (cacheKey.equals(readCacheKey(target))) {
+            LOGGER.info("Диаграмма не изменилась, используется готовый файл: " + fileName);
+            return;
+        }
+
         // Создаем набор данных для гистограммы
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         for (Map.Entry<?, Integer> entry : data) {
@@ -41,12 +81,124 @@ public class ChartGenerator {
         try {
             LOGGER.info("Сохранение диаграммы: " + fileName);
             // Преобразуем диаграмму в изображение размером 800x600 и кодируем в PNG
-            byte[] imageData = ChartUtils.encodeAsPNG(chart.createBufferedImage(800, 600));
-            // Сохраняем изображение через FileHandler
-            FileHandler.writeImageFile(fileName, imageData);
+            byte[] imageData = ChartUtils.encodeAsPNG(chart.createBufferedImage(WIDTH, HEIGHT));
+            // Сохраняем изображение через FileHandler вместе с ключом кэша
+            FileHandler.writeImageFile(fileName, withCacheKey(imageData, cacheKey));
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Ошибка при генерации диаграммы: " + fileName, e);
             throw new RuntimeException("Ошибка сохранения диаграммы: " + fileName, e);
         }
     }
+
+    /**
+     * Генерирует гистограмму в потоке отрисовки.
+     * Данные копируются при вызове, поэтому исходный список можно менять сразу.
+     *
+     * @param title - заголовок диаграммы
+     * @param data - список пар (элемент, частота) для отображения
+     * @param fileName - имя файла для сохранения диаграммы
+     * @return CompletableFuture<Void> - завершается после записи файла
+     */
+    public static CompletableFuture<Void> generateChartAsync(String title, List<Map.Entry<?, Integer>> data, String fileName) {
+        List<Map.Entry<?, Integer>> copy = new ArrayList<>(data);
+        return CompletableFuture.runAsync(() -> generateChart(title, copy, fileName), RENDER_EXECUTOR);
+    }
+
+    /**
+     * Ключ кэша: SHA-256 от версии оформления, размеров, заголовка и данных.
+     */
+    static String cacheKey(String title, List<Map.Entry<?, Integer>> data, int width, int height) {
+        StringBuilder content = new StringBuilder();
+        content.append(RENDER_VERSION).append('\n')
+                .append(width).append('x').append(height).append('\n')
+                .append(title).append('\n');
+        for (Map.Entry<?, Integer> entry : data) {
+            content.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Вставляет блок tEXt с ключом кэша сразу после IHDR.
+     */
+    private static byte[] withCacheKey(byte[] png, String cacheKey) {
+        // Сигнатура (8) + IHDR: длина (4), тип (4), данные (13), CRC (4)
+        int insertAt = PNG_SIGNATURE.length + 4 + 4 + 13 + 4;
+        byte[] payload = (CACHE_KEYWORD + '\0' + cacheKey).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] type = "tEXt".getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(png.length + payload.length + 12);
+        out.write(png, 0, insertAt);
+        writeInt(out, payload.length);
+        out.write(type, 0, type.length);
+        out.write(payload, 0, payload.length);
+        writeInt(out, (int) crc.getValue());
+        out.write(png, insertAt, png.length - insertAt);
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Читает ключ кэша из начала PNG-файла.
+     *
+     * @return String - ключ или null, если файла нет или ключ не записан
+     */
+    private static String readCacheKey(Path file) {
+        byte[] header = new byte[HEADER_PROBE_BYTES];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Не удалось прочитать диаграмму: " + file, e);
+            return null;
+        }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (length <= i || header[i] != PNG_SIGNATURE[i]) {
+                return null;
+            }
+        }
+        // Перебираем блоки до первого IDAT
+        int pos = PNG_SIGNATURE.length;
+        while (pos + 8 <= length) {
+            int chunkLength = ((header[pos] & 0xFF) << 24) | ((header[pos + 1] & 0xFF) << 16)
+                    | ((header[pos + 2] & 0xFF) << 8) | (header[pos + 3] & 0xFF);
+            String type = new String(header, pos + 4, 4, StandardCharsets.ISO_8859_1);
+            int dataStart = pos + 8;
+            if (chunkLength < 0 || type.equals("IDAT") || dataStart + chunkLength > length) {
+                return null;
+            }
+            if (type.equals("tEXt")) {
+                String text = new String(header, dataStart, chunkLength, StandardCharsets.ISO_8859_1);
+                int separator = text.indexOf('\0');
+                if (separator >= 0 && text.substring(0, separator).equals(CACHE_KEYWORD)) {
+                    return text.substring(separator + 1);
+                }
+            }
+            pos = dataStart + chunkLength + 4;
+        }
+        return null;
+    }
 }
\ No newline at end of file
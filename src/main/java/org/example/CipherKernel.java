@@ -0,0 +1,190 @@
+package org.example;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Общее ядро шифров Цезаря и Виженера.
+ * Преобразует текст "на месте" в массивах char[] и буферах CharBuffer,
+ * без упаковки символов в Character/Integer и без посимвольного StringBuilder.
+ * Вместо HashMap используются плотные таблицы подстановки, поэтому один символ
+ * обрабатывается одним чтением из массива и одним сложением.
+ */
+public final class CipherKernel {
+    /** Размер алфавита */
+    public static final int SIZE = CipherUtils.ALPHABET.length();
+
+    /**
+     * Индекс буквы по коду символа: таблица на все 65536 значений char,
+     * -1 для символов вне алфавита. Занимает 64 КБ и не требует проверки границ.
+     */
+    private static final byte[] CHAR_TO_INDEX = initCharToIndex();
+
+    /**
+     * Алфавит, записанный дважды подряд. Индекс (index + shift) при
+     * 0 <= shift < SIZE всегда попадает в массив, поэтому операция % не нужна.
+     */
+    private static final char[] INDEX_TO_CHAR = (CipherUtils.ALPHABET + CipherUtils.ALPHABET).toCharArray();
+
+    private CipherKernel() {
+    }
+
+    private static byte[] initCharToIndex() {
+        byte[] table = new byte[Character.MAX_VALUE + 1];
+        Arrays.fill(table, (byte) -1);
+        for (int i = 0; i < CipherUtils.ALPHABET.length(); i++) {
+            table[CipherUtils.ALPHABET.charAt(i)] = (byte) i;
+        }
+        return table;
+    }
+
+    /**
+     * Возвращает индекс буквы в алфавите.
+     *
+     * @param c - символ
+     * @return int - индекс 0..SIZE-1 или -1, если символа нет в алфавите
+     */
+    public static int indexOf(char c) {
+        return CHAR_TO_INDEX[c];
+    }
+
+    /**
+     * Возвращает букву алфавита по индексу.
+     *
+     * @param index - индекс 0..SIZE-1
+     * @return char - буква алфавита
+     */
+    public static char charAt(int index) {
+        return INDEX_TO_CHAR[index];
+    }
+
+    /**
+     * Приводит произвольный сдвиг (в том числе отрицательный) к диапазону 0..SIZE-1.
+     *
+     * @param shift - сдвиг
+     * @return int - нормализованный сдвиг
+     */
+    public static int normalizeShift(int shift) {
+        return Math.floorMod(shift, SIZE);
+    }
+
+    /**
+     * Переводит ключ Виженера в массив сдвигов.
+     *
+     * @param key - ключ из букв алфавита
+     * @param decrypt - true, чтобы получить обратные сдвиги для расшифровки
+     * @return int[] - сдвиги 0..SIZE-1 для каждой позиции ключа
+     * @throws IllegalArgumentException если ключ пуст или содержит символ вне алфавита
+     */
+    public static int[] keyShifts(String key, boolean decrypt) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Ключ Виженера не может быть пустым");
+        }
+        int[] shifts = new int[key.length()];
+        for (int i = 0; i < shifts.length; i++) {
+            int index = indexOf(key.charAt(i));
+            if (index < 0) {
+                throw new IllegalArgumentException("Символ ключа вне алфавита: " + key.charAt(i));
+            }
+            shifts[i] = decrypt ? normalizeShift(-index) : index;
+        }
+        return shifts;
+    }
+
+    /**
+     * Сдвигает буквы фрагмента массива на shift позиций (шифр Цезаря).
+     * Символы вне алфавита остаются без изменений.
+     *
+     * @param buf - массив символов, изменяется на месте
+     * @param off - начало фрагмента
+     * @param len - длина фрагмента
+     * @param shift - сдвиг (для расшифровки передается отрицательный)
+     */
+    public static void caesar(char[] buf, int off, int len, int shift) {
+        int s = normalizeShift(shift);
+        byte[] toIndex = CHAR_TO_INDEX;
+        char[] toChar = INDEX_TO_CHAR;
+        for (int i = off, end = off + len; i < end; i++) {
+            int index = toIndex[buf[i]];
+            if (index >= 0) {
+                buf[i] = toChar[index + s];
+            }
+        }
+    }
+
+    /**
+     * Шифр Цезаря для символов буфера между position и limit.
+     * Позиция буфера не меняется.
+     *
+     * @param buf - буфер, изменяется на месте
+     * @param shift - сдвиг (для расшифровки передается отрицательный)
+     */
+    public static void caesar(CharBuffer buf, int shift) {
+        if (buf.hasArray()) {
+            caesar(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), shift);
+            return;
+        }
+        int s = normalizeShift(shift);
+        for (int i = buf.position(), end = buf.limit(); i < end; i++) {
+            int index = CHAR_TO_INDEX[buf.get(i)];
+            if (index >= 0) {
+                buf.put(i, INDEX_TO_CHAR[index + s]);
+            }
+        }
+    }
+
+    /**
+     * Применяет шифр Виженера к фрагменту массива.
+     * Как и в CipherUtils.encryptVigenere, позиция в ключе сдвигается на каждом
+     * символе, включая символы вне алфавита. Возвращаемая фаза позволяет продолжить
+     * обработку следующего фрагмента того же текста.
+     *
+     * @param buf - массив символов, изменяется на месте
+     * @param off - начало фрагмента
+     * @param len - длина фрагмента
+     * @param shifts - сдвиги ключа из keyShifts()
+     * @param phase - позиция в ключе для первого символа фрагмента
+     * @return int - позиция в ключе для символа, следующего за фрагментом
+     */
+    public static int vigenere(char[] buf, int off, int len, int[] shifts, int phase) {
+        byte[] toIndex = CHAR_TO_INDEX;
+        char[] toChar = INDEX_TO_CHAR;
+        int k = phase % shifts.length;
+        for (int i = off, end = off + len; i < end; i++) {
+            int index = toIndex[buf[i]];
+            if (index >= 0) {
+                buf[i] = toChar[index + shifts[k]];
+            }
+            if (++k == shifts.length) {
+                k = 0;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Шифр Виженера для символов буфера между position и limit.
+     * Позиция буфера не меняется.
+     *
+     * @param buf - буфер, изменяется на месте
+     * @param shifts - сдвиги ключа из keyShifts()
+     * @param phase - позиция в ключе для символа в position
+     * @return int - позиция в ключе для символа, следующего за limit
+     */
+    public static int vigenere(CharBuffer buf, int[] shifts, int phase) {
+        if (buf.hasArray()) {
+            return vigenere(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), shifts, phase);
+        }
+        int k = phase % shifts.length;
+        for (int i = buf.position(), end = buf.limit(); i < end; i++) {
+            int index = CHAR_TO_INDEX[buf.get(i)];
+            if (index >= 0) {
+                buf.put(i, INDEX_TO_CHAR[index + shifts[k]]);
+            }
+            if (++k == shifts.length) {
+                k = 0;
+            }
+        }
+        return k;
+    }
+}
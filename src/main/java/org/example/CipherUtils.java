@@ -26,31 +26,25 @@ public class CipherUtils {
 
     // Шифрование шифром Цезаря
     public static String encryptCaesar(String text, int shift) {
-        StringBuilder result = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            if (charToIndex.containsKey(c)) {
-                int index = (charToIndex.get(c) + shift) % ALPHABET.length();
-                result.append(indexToChar.get(index));
-            } else {
-                result.append(c);
-            }
-        }
-        return result.toString();
+        char[] chars = text.toCharArray();
+        CipherKernel.caesar(chars, 0, chars.length, shift);
+        return new String(chars);
     }
 
     // Шифрование шифром Виженера
     public static String encryptVigenere(String text, String key) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            char k = key.charAt(i % key.length());
-            if (charToIndex.containsKey(c)) {
-                int index = (charToIndex.get(c) + charToIndex.get(k)) % ALPHABET.length();
-                result.append(indexToChar.get(index));
-            } else {
-                result.append(c);
-            }
-        }
-        return result.toString();
+        char[] chars = text.toCharArray();
+        CipherKernel.vigenere(chars, 0, chars.length, CipherKernel.keyShifts(key, false), 0);
+        return new String(chars);
+    }
+
+    // Шифрование шифром Цезаря закодированного текста (индексы сдвигаются без перевода в символы)
+    public static EncodedText encryptCaesar(EncodedText text, int shift) {
+        return text.caesar(shift);
+    }
+
+    // Шифрование шифром Виженера закодированного текста
+    public static EncodedText encryptVigenere(EncodedText text, String key) {
+        return text.vigenere(CipherKernel.keyShifts(key, false));
     }
 }
\ No newline at end of file
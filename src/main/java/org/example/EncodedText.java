@@ -0,0 +1,337 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Текст, закодированный индексами букв алфавита: один байт на символ.
+ *
+ * Буква хранится как индекс 0..32 в CipherUtils.ALPHABET. Частые символы вне
+ * алфавита (пробел, перевод строки, знаки препинания, цифры, строчные и
+ * латинские буквы) получают собственные отрицательные коды от -2 до -128 и
+ * тоже занимают один байт. Только редкие символы хранятся как OTHER (-1), а
+ * сам символ и его позиция записываются в отдельную таблицу (еще 6 байт).
+ * Проверка index >= 0 по-прежнему означает "буква алфавита".
+ *
+ * На input.txt и largeText.txt получается 1,00 байта на символ против 2 байт
+ * у String с кириллицей; горячие циклы шифрования и подсчета читают индексы
+ * из массива напрямую, без перевода символа в индекс.
+ *
+ * Экземпляр неизменяемый: шифрование и расшифровка возвращают новый текст,
+ * таблица остальных символов при этом общая, так как шифры ее не меняют.
+ * Реализует CharSequence, поэтому принимается везде, где нужен текст.
+ */
+public final class EncodedText implements CharSequence {
+    /** Индекс символа вне алфавита */
+    public static final byte OTHER = -1;
+
+    /** Частые символы вне алфавита; символ COMMON_CHARS[k] кодируется как -2 - k */
+    private static final String COMMON_CHARS = " \n\r\t,.-!?:;\"'()—–«»…0123456789"
+            + "абвгдеёжзийклмнопрстуфхцчшщъыьэюя"
+            + "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    /** Код символа по значению char: индекс буквы, код частого символа или OTHER */
+    private static final byte[] CHAR_TO_CODE = initCharToCode();
+
+    private final byte[] indices;
+    /** Позиции символов вне алфавита по возрастанию */
+    private final int[] otherPositions;
+    private final char[] otherChars;
+    private final int otherCount;
+    private final int letterCount;
+
+    private EncodedText(byte[] indices, int[] otherPositions, char[] otherChars, int otherCount, int letterCount) {
+        this.indices = indices;
+        this.otherPositions = otherPositions;
+        this.otherChars = otherChars;
+        this.otherCount = otherCount;
+        this.letterCount = letterCount;
+    }
+
+    private static byte[] initCharToCode() {
+        if (COMMON_CHARS.length() > -Byte.MIN_VALUE - 1) {
+            throw new IllegalStateException("Слишком много частых символов: " + COMMON_CHARS.length());
+        }
+        byte[] table = new byte[Character.MAX_VALUE + 1];
+        Arrays.fill(table, OTHER);
+        for (int k = 0; k < COMMON_CHARS.length(); k++) {
+            table[COMMON_CHARS.charAt(k)] = (byte) (-2 - k);
+        }
+        for (int i = 0; i < CipherKernel.SIZE; i++) {
+            table[CipherKernel.charAt(i)] = (byte) i;
+        }
+        return table;
+    }
+
+    /**
+     * Кодирует текст как есть, без перевода в верхний регистр: строчные буквы
+     * окажутся вне алфавита, как и в CipherUtils.encryptCaesar.
+     *
+     * @param text - исходный текст
+     * @return EncodedText - закодированный текст
+     */
+    public static EncodedText of(CharSequence text) {
+        if (text instanceof EncodedText) {
+            return (EncodedText) text;
+        }
+        Builder builder = new Builder(text.length(), false);
+        for (int i = 0; i < text.length(); i++) {
+            builder.append(text.charAt(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Возвращает индексы первых length символов текста (OTHER для символов вне алфавита).
+     * Для EncodedText это копия внутреннего массива, в которой коды частых символов
+     * заменены на OTHER, для остальных текстов - перевод каждого символа через
+     * CipherKernel.indexOf.
+     *
+     * @param text - текст
+     * @param length - количество символов, не больше text.length()
+     * @return byte[] - новый массив индексов
+     */
+    public static byte[] indicesOf(CharSequence text, int length) {
+        if (text instanceof EncodedText) {
+            byte[] result = Arrays.copyOf(((EncodedText) text).indices, length);
+            for (int i = 0; i < length; i++) {
+                if (result[i] < OTHER) {
+                    result[i] = OTHER;
+                }
+            }
+            return result;
+        }
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) CipherKernel.indexOf(text.charAt(i));
+        }
+        return result;
+    }
+
+    @Override
+    public int length() {
+        return indices.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        int letter = indices[index];
+        if (letter >= 0) {
+            return CipherKernel.charAt(letter);
+        }
+        if (letter != OTHER) {
+            return COMMON_CHARS.charAt(-2 - letter);
+        }
+        return otherChars[Arrays.binarySearch(otherPositions, 0, otherCount, index)];
+    }
+
+    /**
+     * @param index - позиция в тексте
+     * @return int - индекс буквы в алфавите или OTHER
+     */
+    public int indexAt(int index) {
+        int letter = indices[index];
+        return letter >= 0 ? letter : OTHER;
+    }
+
+    /**
+     * Внутренний массив индексов без копирования; изменять его нельзя. Символы
+     * вне алфавита в нем отрицательные, но не обязательно равны OTHER.
+     */
+    byte[] indexArray() {
+        return indices;
+    }
+
+    /** @return int - количество букв алфавита в тексте */
+    public int letterCount() {
+        return letterCount;
+    }
+
+    @Override
+    public EncodedText subSequence(int start, int end) {
+        return stride(start, end, 1);
+    }
+
+    /**
+     * Возвращает символы start, start + step, start + 2 * step, ...
+     * Например, столбец шифротекста Виженера для одной позиции ключа.
+     *
+     * @param start - первая позиция
+     * @param step - шаг, не меньше 1
+     * @return EncodedText - выбранные символы
+     */
+    public EncodedText stride(int start, int step) {
+        return stride(start, indices.length, step);
+    }
+
+    private EncodedText stride(int start, int end, int step) {
+        if (start < 0 || end > indices.length || start > end || step < 1) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", step " + step + ", length " + indices.length);
+        }
+        int length = (end - start + step - 1) / step;
+        Builder builder = new Builder(length, false);
+        for (int i = start; i < end; i += step) {
+            int letter = indices[i];
+            if (letter != OTHER) {
+                builder.appendCode(letter);
+            } else {
+                builder.appendOther(charAt(i));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Сдвигает каждую букву на shift позиций (шифр Цезаря).
+     *
+     * @param shift - сдвиг, может быть отрицательным
+     * @return EncodedText - новый текст
+     */
+    public EncodedText caesar(int shift) {
+        int normalized = CipherKernel.normalizeShift(shift);
+        byte[] result = new byte[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            int letter = indices[i];
+            if (letter >= 0) {
+                letter += normalized;
+                result[i] = (byte) (letter >= CipherKernel.SIZE ? letter - CipherKernel.SIZE : letter);
+            } else {
+                result[i] = (byte) letter;
+            }
+        }
+        return new EncodedText(result, otherPositions, otherChars, otherCount, letterCount);
+    }
+
+    /**
+     * Сдвигает буквы на сдвиги ключа по очереди (шифр Виженера). Как и в
+     * CipherKernel.vigenere, позиция в ключе переходит к следующей на каждом символе.
+     *
+     * @param shifts - сдвиги ключа от 0 до 32 (CipherKernel.keyShifts)
+     * @return EncodedText - новый текст
+     */
+    public EncodedText vigenere(int[] shifts) {
+        byte[] result = new byte[indices.length];
+        int phase = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int letter = indices[i];
+            if (letter >= 0) {
+                letter += shifts[phase];
+                result[i] = (byte) (letter >= CipherKernel.SIZE ? letter - CipherKernel.SIZE : letter);
+            } else {
+                result[i] = (byte) letter;
+            }
+            if (++phase == shifts.length) {
+                phase = 0;
+            }
+        }
+        return new EncodedText(result, otherPositions, otherChars, otherCount, letterCount);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[indices.length];
+        int other = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int letter = indices[i];
+            if (letter >= 0) {
+                chars[i] = CipherKernel.charAt(letter);
+            } else if (letter != OTHER) {
+                chars[i] = COMMON_CHARS.charAt(-2 - letter);
+            } else {
+                chars[i] = otherChars[other++];
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Построитель текста, который заполняется по частям, например при чтении
+     * файла блоками.
+     */
+    public static final class Builder {
+        private final boolean upperCase;
+        private byte[] indices;
+        private int length;
+        private int[] otherPositions = new int[16];
+        private char[] otherChars = new char[16];
+        private int otherCount;
+        private int letterCount;
+
+        /**
+         * @param expectedLength - ожидаемая длина текста
+         * @param upperCase - переводить ли символы в верхний регистр, как FileHandler.readFile
+         */
+        public Builder(int expectedLength, boolean upperCase) {
+            this.indices = new byte[Math.max(16, expectedLength)];
+            this.upperCase = upperCase;
+        }
+
+        public Builder append(char c) {
+            if (upperCase) {
+                c = Character.toUpperCase(c);
+            }
+            int code = CHAR_TO_CODE[c];
+            if (code != OTHER) {
+                appendCode(code);
+            } else {
+                appendOther(c);
+            }
+            return this;
+        }
+
+        public Builder append(char[] chars, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                append(chars[i]);
+            }
+            return this;
+        }
+
+        private void appendIndex(int letter) {
+            if (length == indices.length) {
+                indices = Arrays.copyOf(indices, grow(indices.length));
+            }
+            indices[length++] = (byte) letter;
+            letterCount++;
+        }
+
+        /** Добавляет индекс буквы или код частого символа */
+        private void appendCode(int code) {
+            if (code >= 0) {
+                appendIndex(code);
+                return;
+            }
+            if (length == indices.length) {
+                indices = Arrays.copyOf(indices, grow(indices.length));
+            }
+            indices[length++] = (byte) code;
+        }
+
+        private void appendOther(char c) {
+            int code = CHAR_TO_CODE[c];
+            if (code < OTHER) {
+                appendCode(code);
+                return;
+            }
+            if (otherCount == otherChars.length) {
+                otherPositions = Arrays.copyOf(otherPositions, grow(otherCount));
+                otherChars = Arrays.copyOf(otherChars, grow(otherCount));
+            }
+            otherPositions[otherCount] = length;
+            otherChars[otherCount++] = c;
+            appendCode(OTHER);
+        }
+
+        private static int grow(int capacity) {
+            int grown = capacity + (capacity >> 1) + 16;
+            if (grown < 0) {
+                throw new OutOfMemoryError("Текст слишком длинный для EncodedText");
+            }
+            return grown;
+        }
+
+        public EncodedText build() {
+            byte[] result = length == indices.length ? indices : Arrays.copyOf(indices, length);
+            return new EncodedText(result, Arrays.copyOf(otherPositions, otherCount),
+                    Arrays.copyOf(otherChars, otherCount), otherCount, letterCount);
+        }
+    }
+}
\ No newline at end of file
@@ -3,8 +3,9 @@ package org.example;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
 
@@ -12,6 +13,14 @@ public class FileHandler {
     private static final String INPUT_DIR = "src/main/resources/FileInput/";
     private static final String OUTPUT_DIR = "src/main/resources/FileOutput/";
 
+    public static Path inputPath(String fileName) {
+        return Paths.get(INPUT_DIR, fileName);
+    }
+
+    public static Path outputPath(String fileName) {
+        return Paths.get(OUTPUT_DIR, fileName);
+    }
+
     public static String readFile(String fileName) {
         String fullPath = Paths.get(INPUT_DIR, fileName).toString();
         StringBuilder text = new StringBuilder();
@@ -26,10 +35,40 @@ public class FileHandler {
         return text.toString().toUpperCase();
     }
 
-    public static void writeFile(String fileName, String content) {
+    // Читает файл по произвольному пути в UTF-8 и приводит текст к тому же виду, что и readFile
+    public static String readText(Path path) {
+        try {
+            String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            return text.replace("\r", "").replace("\n", "").toUpperCase();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + path, e);
+        }
+    }
+
+    // Читает файл сразу в закодированном виде (EncodedText) блоками, без промежуточной строки;
+    // StreamingCipher.scan приводит текст к тому же виду, что и readFile
+    public static EncodedText readEncoded(String fileName) {
+        return readEncoded(inputPath(fileName));
+    }
+
+    public static EncodedText readEncoded(Path path) {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + path, e);
+        }
+        // В UTF-8 кириллическая буква занимает два байта
+        EncodedText.Builder builder = new EncodedText.Builder((int) Math.min(Integer.MAX_VALUE - 8, size / 2), false);
+        StreamingCipher.scan(path, builder::append);
+        return builder.build();
+    }
+
+    // Пишет в UTF-8 явно, как читает readEncoded: кодировка по умолчанию может не знать кириллицу
+    public static void writeFile(String fileName, CharSequence content) {
         String fullPath = Paths.get(OUTPUT_DIR, fileName).toString();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fullPath))) {
-            writer.write(content);
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fullPath), StandardCharsets.UTF_8)) {
+            writer.append(content);
         } catch (IOException e) {
             throw new RuntimeException("Ошибка записи в файл: " + fullPath, e);
         }
@@ -1,21 +1,43 @@
 package org.example;
 
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Класс для частотного анализа текста.
  * Подсчитывает частоты букв и биграмм, предоставляет методы для получения статистики.
+ * Подсчет выполняет NGramCounter: n-граммы упаковываются в int и считаются
+ * в примитивных массивах без выделения памяти на каждый символ.
+ *
+ * При parallelism > 1 текст делится на фрагменты, которые считаются в ForkJoinPool
+ * из parallelism потоков независимыми гистограммами и затем суммируются.
+ * Результат совпадает с последовательным подсчетом.
+ *
+ * Для длинных n-грамм и слов в больших файлах есть приближенный режим
+ * (approximateNGrams, approximateWords): память фиксирована и не зависит
+ * от размера словаря.
  */
 public class FrequencyAnalyzer {
-    /** Исходный текст для анализа, неизменяемый после создания объекта */
-    private final String text;
-    /** Карта для хранения частот букв: ключ - буква, значение - количество появлений */
-    private final Map<Character, Integer> letterFreq = new HashMap<>();
-    /** Карта для хранения частот биграмм: ключ - биграмма, значение - количество появлений */
-    private final Map<String, Integer> bigramFreq = new HashMap<>();
+    /** Минимальный размер фрагмента при параллельном подсчете, символов */
+    private static final int MIN_CHUNK = 1 << 16;
+
+    /** Наибольшая длина n-граммы для приближенного подсчета: 33^12 помещается в long */
+    public static final int MAX_APPROXIMATE_N = 12;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /** Исходный текст для анализа (String или EncodedText), неизменяемый после создания объекта */
+    private final CharSequence text;
+    /** Количество потоков подсчета (1 - последовательный режим) */
+    private final int parallelism;
+    /** Счетчики n-грамм по длине n (индекс 0 не используется); триграммы и квадграммы считаются по запросу */
+    private final NGramCounter[] counters = new NGramCounter[NGramCounter.MAX_N + 1];
 
     /**
      * Конструктор класса.
@@ -24,28 +46,96 @@ public class FrequencyAnalyzer {
      * @param text - текст для анализа
      */
     public FrequencyAnalyzer(String text) {
+        this(text, 1);
+    }
+
+    /**
+     * Конструктор с параллельным подсчетом.
+     *
+     * @param text - текст для анализа
+     * @param parallelism - количество потоков подсчета (1 - последовательный режим)
+     */
+    public FrequencyAnalyzer(String text, int parallelism) {
+        this((CharSequence) text, parallelism);
+    }
+
+    /**
+     * Конструктор для закодированного текста: буквы считаются прямо по индексам.
+     *
+     * @param text - текст для анализа
+     */
+    public FrequencyAnalyzer(EncodedText text) {
+        this(text, 1);
+    }
+
+    /**
+     * Конструктор для закодированного текста с параллельным подсчетом.
+     *
+     * @param text - текст для анализа
+     * @param parallelism - количество потоков подсчета (1 - последовательный режим)
+     */
+    public FrequencyAnalyzer(EncodedText text, int parallelism) {
+        this((CharSequence) text, parallelism);
+    }
+
+    private FrequencyAnalyzer(CharSequence text, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Количество потоков должно быть положительным: " + parallelism);
+        }
         this.text = text;
+        this.parallelism = parallelism;
         analyzeFrequencies(); // Сразу выполняем анализ при создании объекта
     }
 
     /**
      * Анализирует частоты букв и биграмм в тексте.
-     * Заполняет letterFreq и bigramFreq на основе текста.
+     * В последовательном режиме оба счетчика заполняются за один проход по тексту.
      */
     private void analyzeFrequencies() {
-        // Подсчет частот букв
-        for (char c : text.toCharArray()) {
-            if (CipherUtils.charToIndex.containsKey(c)) { // Проверяем, входит ли символ в алфавит
-                letterFreq.put(c, letterFreq.getOrDefault(c, 0) + 1); // Увеличиваем частоту
+        if (isParallel()) {
+            NGramCounter[] result = countParallel(1, 2);
+            counters[1] = result[0];
+            counters[2] = result[1];
+            return;
+        }
+        NGramCounter letters = new NGramCounter(1);
+        NGramCounter bigrams = new NGramCounter(2);
+        if (text instanceof EncodedText) {
+            for (byte index : ((EncodedText) text).indexArray()) {
+                letters.addIndex(index);
+                bigrams.addIndex(index);
+            }
+        } else {
+            for (int i = 0; i < text.length(); i++) {
+                int index = CipherKernel.indexOf(text.charAt(i)); // -1 для символов вне алфавита
+                letters.addIndex(index);
+                bigrams.addIndex(index);
             }
         }
-        // Подсчет частот биграмм
-        for (int i = 0; i < text.length() - 1; i++) {
-            String bigram = text.substring(i, i + 2); // Берем пару символов
-            if (bigram.matches("[" + CipherUtils.ALPHABET + "]{2}")) { // Проверяем, что оба символа из алфавита
-                bigramFreq.put(bigram, bigramFreq.getOrDefault(bigram, 0) + 1); // Увеличиваем частоту
+        counters[1] = letters;
+        counters[2] = bigrams;
+    }
+
+    /**
+     * Возвращает счетчик n-грамм, при необходимости подсчитывая их.
+     *
+     * @param n - длина n-граммы, от 1 до NGramCounter.MAX_N
+     * @return NGramCounter - счетчик
+     */
+    public NGramCounter getCounter(int n) {
+        if (n < 1 || n > NGramCounter.MAX_N) {
+            throw new IllegalArgumentException("Длина n-граммы должна быть от 1 до " + NGramCounter.MAX_N + ": " + n);
+        }
+        if (counters[n] == null) {
+            if (isParallel()) {
+                counters[n] = countParallel(n)[0];
+            } else {
+                NGramCounter counter = new NGramCounter(n);
+                counter.add(text);
+                counters[n] = counter;
             }
         }
+        return counters[n];
     }
 
     /**
@@ -56,9 +146,8 @@ public class FrequencyAnalyzer {
     public Map<Character, Double> getLetterProbabilities() {
         Map<Character, Double> probabilities = new HashMap<>();
         int total = text.length(); // Общее количество символов в тексте
-        for (Map.Entry<Character, Integer> entry : letterFreq.entrySet()) {
-            probabilities.put(entry.getKey(), (double) entry.getValue() / total); // Частота делится на длину текста
-        }
+        counters[1].forEach((key, count) ->
+                probabilities.put(CipherKernel.charAt(key), (double) count / total)); // Частота делится на длину текста
         return probabilities;
     }
 
@@ -69,10 +158,12 @@ public class FrequencyAnalyzer {
      * @return List<Map.Entry<?, Integer>> - топ-n букв с их частотами
      */
     public List<Map.Entry<?, Integer>> getTopLetters(int n) {
-        return letterFreq.entrySet().stream()
-                .sorted(Map.Entry.<Character, Integer>comparingByValue().reversed()) // Сортировка по убыванию частоты
-                .limit(n) // Ограничиваем до n элементов
-                .collect(Collectors.toList()); // Собираем в список
+        List<Map.Entry<?, Integer>> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counters[1].top(n)) {
+            // Буквы возвращаются как Character, как и раньше
+            result.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey().charAt(0), entry.getValue()));
+        }
+        return result;
     }
 
     /**
@@ -82,9 +173,178 @@ public class FrequencyAnalyzer {
      * @return List<Map.Entry<?, Integer>> - топ-n биграмм с их частотами
      */
     public List<Map.Entry<?, Integer>> getTopBigrams(int n) {
-        return bigramFreq.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()) // Сортировка по убыванию частоты
-                .limit(n) // Ограничиваем до n элементов
-                .collect(Collectors.toList()); // Собираем в список
+        return getTopNGrams(2, n);
+    }
+
+    /**
+     * Возвращает список из n самых частых триграмм.
+     *
+     * @param n - количество элементов в списке
+     * @return List<Map.Entry<?, Integer>> - топ-n триграмм с их частотами
+     */
+    public List<Map.Entry<?, Integer>> getTopTrigrams(int n) {
+        return getTopNGrams(3, n);
+    }
+
+    /**
+     * Возвращает список из n самых частых квадграмм.
+     *
+     * @param n - количество элементов в списке
+     * @return List<Map.Entry<?, Integer>> - топ-n квадграмм с их частотами
+     */
+    public List<Map.Entry<?, Integer>> getTopQuadgrams(int n) {
+        return getTopNGrams(4, n);
+    }
+
+    /**
+     * Возвращает список из limit самых частых n-грамм заданной длины.
+     *
+     * @param gramLength - длина n-граммы
+     * @param limit - количество элементов в списке
+     * @return List<Map.Entry<?, Integer>> - n-граммы с их частотами
+     */
+    public List<Map.Entry<?, Integer>> getTopNGrams(int gramLength, int limit) {
+        return new ArrayList<>(getCounter(gramLength).top(limit));
+    }
+
+    /**
+     * Приближенно считает самые частые n-граммы файла в фиксированном объеме памяти
+     * (SpaceSavingCounter). Файл читается блоками, поэтому его размер и число
+     * различных n-грамм не ограничены. Ключи оценок - n-граммы, упакованные
+     * в long, их можно распаковать NGramCounter.decode(long, int).
+     *
+     * @param file - текстовый файл
+     * @param n - длина n-граммы, от 1 до MAX_APPROXIMATE_N
+     * @param capacity - количество счетчиков; погрешность не больше total / capacity
+     * @return SpaceSavingCounter - заполненный счетчик
+     */
+    public static SpaceSavingCounter approximateNGrams(Path file, int n, int capacity) {
+        if (n < 1 || n > MAX_APPROXIMATE_N) {
+            throw new IllegalArgumentException("Длина n-граммы должна быть от 1 до " + MAX_APPROXIMATE_N + ": " + n);
+        }
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        long modulus = 1;
+        for (int i = 1; i < n; i++) {
+            modulus *= CipherKernel.SIZE;
+        }
+        long oldest = modulus;
+        // Окно переживает границы блоков: состояние хранится вне обработчика
+        long[] window = new long[1];
+        int[] run = new int[1];
+        StreamingCipher.scan(file, (chars, off, len) -> {
+            for (int i = off; i < off + len; i++) {
+                int index = CipherKernel.indexOf(chars[i]);
+                if (index < 0) {
+                    run[0] = 0;
+                    continue;
+                }
+                window[0] = (window[0] % oldest) * CipherKernel.SIZE + index;
+                if (run[0] < n) {
+                    run[0]++;
+                }
+                if (run[0] == n) {
+                    counter.add(window[0]);
+                }
+            }
+        });
+        return counter;
+    }
+
+    /**
+     * Приближенно считает самые частые слова файла в фиксированном объеме памяти.
+     * Слово - непрерывная последовательность букв алфавита в пределах строки. Ключ оценки -
+     * 64-битный хэш FNV-1a слова, само слово доступно через Estimate.getLabel().
+     *
+     * @param file - текстовый файл
+     * @param capacity - количество счетчиков; погрешность не больше total / capacity
+     * @return SpaceSavingCounter - заполненный счетчик
+     */
+    public static SpaceSavingCounter approximateWords(Path file, int capacity) {
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        StringBuilder word = new StringBuilder();
+        long[] hash = {FNV_OFFSET};
+        // Переводы строк сохраняются: иначе последнее слово строки слилось бы с первым словом следующей
+        StreamingCipher.scan(file, true, (chars, off, len) -> {
+            for (int i = off; i < off + len; i++) {
+                int index = CipherKernel.indexOf(chars[i]);
+                if (index >= 0) {
+                    word.append(chars[i]);
+                    hash[0] = (hash[0] ^ index) * FNV_PRIME;
+                } else if (word.length() > 0) {
+                    counter.add(hash[0], word);
+                    word.setLength(0);
+                    hash[0] = FNV_OFFSET;
+                }
+            }
+        });
+        if (word.length() > 0) {
+            counter.add(hash[0], word);
+        }
+        return counter;
+    }
+
+    private boolean isParallel() {
+        return parallelism > 1 && text.length() >= 2 * MIN_CHUNK;
+    }
+
+    /**
+     * Подсчитывает n-граммы заданных длин в отдельном ForkJoinPool из parallelism
+     * потоков; пул останавливается по завершении подсчета.
+     *
+     * @param lengths - длины n-грамм
+     * @return NGramCounter[] - счетчики в порядке lengths
+     */
+    private NGramCounter[] countParallel(int... lengths) {
+        // Фрагментов в несколько раз больше, чем потоков, чтобы work stealing выровнял нагрузку
+        int chunk = Math.max(MIN_CHUNK, text.length() / (parallelism * 4));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new CountTask(text, lengths, 0, text.length(), chunk));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Задача подсчета n-грамм, начинающихся в [from, to).
+     * Делит диапазон пополам, пока он больше chunk, и складывает гистограммы половин.
+     */
+    @SuppressWarnings("serial") // задачи ForkJoinPool не сериализуются
+    private static final class CountTask extends RecursiveTask<NGramCounter[]> {
+        private final CharSequence text;
+        private final int[] lengths;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        CountTask(CharSequence text, int[] lengths, int from, int to, int chunk) {
+            this.text = text;
+            this.lengths = lengths;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected NGramCounter[] compute() {
+            if (to - from <= chunk) {
+                NGramCounter[] result = new NGramCounter[lengths.length];
+                for (int i = 0; i < lengths.length; i++) {
+                    result[i] = new NGramCounter(lengths[i]);
+                    // n-граммы на правой границе дочитываются за to и в соседнем фрагменте не считаются
+                    result[i].addRange(text, from, to);
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            CountTask right = new CountTask(text, lengths, middle, to, chunk);
+            right.fork();
+            NGramCounter[] result = new CountTask(text, lengths, from, middle, chunk).compute();
+            NGramCounter[] rightResult = right.join();
+            for (int i = 0; i < result.length; i++) {
+                result[i].merge(rightResult[i]);
+            }
+            return result;
+        }
     }
-}
\ No newline at end of file
+}
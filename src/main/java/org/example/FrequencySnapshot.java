@@ -0,0 +1,396 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Сохраняемый снимок частот букв и n-грамм файла-источника.
+ *
+ * Снимок помнит, сколько байтов источника уже подсчитано, контрольную сумму
+ * этого префикса и незавершенное окно n-грамм на его конце. Если источник
+ * только дописывается, refresh() проверяет префикс по его последним байтам,
+ * досчитывает хвост и сохраняет новый снимок, так что время обновления
+ * пропорционально объему новых данных. Снимки независимых частей корпуса
+ * объединяются через merge().
+ *
+ * Текст источника обрабатывается как в FileHandler.readFile: UTF-8, верхний
+ * регистр, переводы строк пропускаются. Поэтому счетчики совпадают со
+ * счетчиками FrequencyAnalyzer для текста из readFile.
+ *
+ * Формат файла (big-endian): магическое число, версия, maxN, смещение,
+ * контрольная сумма, длина и хеш хвоста префикса; затем для каждого n от 1
+ * до maxN - состояние окна, общее количество и пары (приращение ключа,
+ * счетчик) в формате varint по возрастанию ключей.
+ */
+public final class FrequencySnapshot {
+    private static final Logger LOGGER = Logger.getLogger(FrequencySnapshot.class.getName());
+
+    private static final int MAGIC = 0x46534E50; // "FSNP"
+    private static final int VERSION = 1;
+    /** Сколько последних байтов префикса перечитывается для проверки источника */
+    private static final int TAIL_CHECK_BYTES = 1 << 16;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int maxN;
+    private final NGramCounter[] counters;
+    /** Количество подсчитанных байтов источника; -1 для снимка, объединенного из частей */
+    private long sourceOffset;
+    /** FNV-1a (64 бита) подсчитанного префикса; продолжается при досчете хвоста */
+    private long checksum;
+    /** Длина и FNV-1a последних байтов префикса для быстрой проверки источника */
+    private int tailLength;
+    private long tailHash;
+
+    private FrequencySnapshot(int maxN) {
+        if (maxN < 1 || maxN > NGramCounter.MAX_N) {
+            throw new IllegalArgumentException("Длина n-граммы должна быть от 1 до " + NGramCounter.MAX_N + ": " + maxN);
+        }
+        this.maxN = maxN;
+        this.counters = new NGramCounter[maxN + 1];
+        for (int n = 1; n <= maxN; n++) {
+            counters[n] = new NGramCounter(n);
+        }
+        this.checksum = FNV_OFFSET;
+    }
+
+    /**
+     * Подсчитывает снимок источника с нуля.
+     *
+     * @param source - файл-источник
+     * @param maxN - наибольшая длина n-граммы
+     * @return FrequencySnapshot - снимок
+     */
+    public static FrequencySnapshot analyze(Path source, int maxN) {
+        FrequencySnapshot snapshot = new FrequencySnapshot(maxN);
+        snapshot.countTail(source);
+        return snapshot;
+    }
+
+    /**
+     * Загружает снимок, досчитывает дописанный хвост источника и сохраняет результат.
+     * Если снимка нет, он сделан для другого maxN или источник изменился не только
+     * дописыванием, источник подсчитывается заново.
+     *
+     * @param snapshotFile - файл снимка
+     * @param source - файл-источник
+     * @param maxN - наибольшая длина n-граммы
+     * @return FrequencySnapshot - актуальный снимок
+     */
+    public static FrequencySnapshot refresh(Path snapshotFile, Path source, int maxN) {
+        FrequencySnapshot snapshot = null;
+        if (Files.exists(snapshotFile)) {
+            snapshot = load(snapshotFile);
+            if (snapshot.maxN != maxN || !snapshot.matchesPrefixOf(source)) {
+                LOGGER.warning("Снимок " + snapshotFile + " не соответствует " + source + ", полный пересчет");
+                snapshot = null;
+            }
+        }
+        if (snapshot == null) {
+            snapshot = new FrequencySnapshot(maxN);
+        }
+        long before = snapshot.sourceOffset;
+        snapshot.countTail(source);
+        LOGGER.info("Снимок " + snapshotFile + ": подсчитано байтов " + (snapshot.sourceOffset - before)
+                + ", всего " + snapshot.sourceOffset);
+        snapshot.save(snapshotFile);
+        return snapshot;
+    }
+
+    /**
+     * Объединяет снимки независимых частей корпуса.
+     * Результат не привязан к источнику и не может быть досчитан через refresh().
+     *
+     * @param shards - снимки частей с одинаковым maxN
+     * @return FrequencySnapshot - суммарный снимок
+     */
+    public static FrequencySnapshot merge(List<FrequencySnapshot> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Нет снимков для объединения");
+        }
+        FrequencySnapshot result = new FrequencySnapshot(shards.get(0).maxN);
+        for (FrequencySnapshot shard : shards) {
+            if (shard.maxN != result.maxN) {
+                throw new IllegalArgumentException("Снимки с разной длиной n-грамм: " + result.maxN + " и " + shard.maxN);
+            }
+            for (int n = 1; n <= result.maxN; n++) {
+                result.counters[n].merge(shard.counters[n]);
+            }
+        }
+        result.sourceOffset = -1;
+        result.checksum = 0;
+        return result;
+    }
+
+    /**
+     * Проверяет, что источник не короче подсчитанного префикса и его последние
+     * байты не изменились. Перечитывается не более TAIL_CHECK_BYTES байтов.
+     */
+    private boolean matchesPrefixOf(Path source) {
+        if (sourceOffset < 0) {
+            return false;
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            return in.size() >= sourceOffset && hashRange(in, sourceOffset - tailLength, tailLength) == tailHash;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + source, e);
+        }
+    }
+
+    /**
+     * Проверяет весь подсчитанный префикс источника по контрольной сумме.
+     * Читает префикс целиком, поэтому предназначен для периодической сверки.
+     *
+     * @param source - файл-источник
+     * @return boolean - true, если префикс не изменился
+     */
+    public boolean verify(Path source) {
+        if (sourceOffset < 0) {
+            return false;
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            return in.size() >= sourceOffset && hashRange(in, 0, sourceOffset) == checksum;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + source, e);
+        }
+    }
+
+    /**
+     * Досчитывает источник начиная с sourceOffset. Неполная UTF-8 последовательность
+     * в конце файла (файл дописывается прямо сейчас) не учитывается и будет
+     * подсчитана при следующем обновлении.
+     */
+    private void countTail(Path source) {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            in.position(sourceOffset);
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+            long hash = checksum;
+            long offset = sourceOffset;
+            while (in.read(bytes) >= 0) {
+                bytes.flip();
+                int start = bytes.position();
+                decoder.decode(bytes, chars, false);
+                // В контрольную сумму и смещение попадают только декодированные байты
+                byte[] array = bytes.array();
+                for (int i = start; i < bytes.position(); i++) {
+                    hash = (hash ^ (array[i] & 0xff)) * FNV_PRIME;
+                }
+                offset += bytes.position() - start;
+                bytes.compact();
+
+                chars.flip();
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    if (c == '\n' || c == '\r') {
+                        continue;
+                    }
+                    int index = CipherKernel.indexOf(Character.toUpperCase(c));
+                    for (int n = 1; n <= maxN; n++) {
+                        counters[n].addIndex(index);
+                    }
+                }
+                chars.clear();
+            }
+            checksum = hash;
+            sourceOffset = offset;
+            tailLength = (int) Math.min(TAIL_CHECK_BYTES, offset);
+            tailHash = hashRange(in, offset - tailLength, tailLength);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + source, e);
+        }
+    }
+
+    private static long hashRange(FileChannel in, long from, long length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        long hash = FNV_OFFSET;
+        long position = from;
+        long end = from + length;
+        while (position < end) {
+            bytes.clear();
+            bytes.limit((int) Math.min(bytes.capacity(), end - position));
+            int read = in.read(bytes, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                hash = (hash ^ (bytes.get(i) & 0xff)) * FNV_PRIME;
+            }
+            position += read;
+        }
+        return hash;
+    }
+
+    /**
+     * Сохраняет снимок в файл: пишет во временный файл рядом и атомарно
+     * переименовывает его, поэтому сбой посреди записи не портит прежний снимок.
+     *
+     * @param file - файл снимка
+     */
+    public void save(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи снимка: " + file, e);
+        }
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(maxN);
+        out.writeLong(sourceOffset);
+        out.writeLong(checksum);
+        out.writeInt(tailLength);
+        out.writeLong(tailHash);
+        for (int n = 1; n <= maxN; n++) {
+            NGramCounter counter = counters[n];
+            out.writeInt(counter.windowKey());
+            out.writeByte(counter.windowRun());
+            out.writeLong(counter.total());
+            int[] keys = sortedKeys(counter);
+            writeVarInt(out, keys.length);
+            int previous = 0;
+            for (int key : keys) {
+                writeVarInt(out, key - previous); // Ключи по возрастанию: пишем только приращение
+                writeVarInt(out, counter.count(key));
+                previous = key;
+            }
+        }
+    }
+
+    /**
+     * Загружает снимок из файла.
+     *
+     * @param file - файл снимка
+     * @return FrequencySnapshot - снимок
+     */
+    public static FrequencySnapshot load(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException("Неизвестный формат снимка");
+            }
+            FrequencySnapshot snapshot = new FrequencySnapshot(in.readByte());
+            snapshot.sourceOffset = in.readLong();
+            snapshot.checksum = in.readLong();
+            snapshot.tailLength = in.readInt();
+            snapshot.tailHash = in.readLong();
+            for (int n = 1; n <= snapshot.maxN; n++) {
+                NGramCounter counter = snapshot.counters[n];
+                int window = in.readInt();
+                int run = in.readByte();
+                counter.restoreState(window, run, in.readLong());
+                int size = readVarInt(in);
+                int key = 0;
+                for (int i = 0; i < size; i++) {
+                    key += readVarInt(in);
+                    if (key >= counter.keySpace()) {
+                        throw new IOException("Ключ n-граммы вне диапазона: " + key);
+                    }
+                    counter.addCount(key, readVarInt(in));
+                }
+            }
+            return snapshot;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения снимка: " + file, e);
+        }
+    }
+
+    private static int[] sortedKeys(NGramCounter counter) {
+        int[] size = new int[1];
+        counter.forEach((key, count) -> size[0]++);
+        int[] keys = new int[size[0]];
+        size[0] = 0;
+        counter.forEach((key, count) -> keys[size[0]++] = key);
+        Arrays.sort(keys); // Плоский массив перебирается по порядку, IntCountMap - нет
+        return keys;
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Неожиданный конец снимка");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Некорректное число в снимке");
+    }
+
+    /** @return int - наибольшая длина n-граммы в снимке */
+    public int getMaxN() {
+        return maxN;
+    }
+
+    /** @return long - количество подсчитанных байтов источника (-1 для объединенного снимка) */
+    public long getSourceOffset() {
+        return sourceOffset;
+    }
+
+    /** @return long - контрольная сумма подсчитанного префикса */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @param n - длина n-граммы, от 1 до getMaxN()
+     * @return NGramCounter - счетчик n-грамм
+     */
+    public NGramCounter getCounter(int n) {
+        if (n < 1 || n > maxN) {
+            throw new IllegalArgumentException("В снимке нет " + n + "-грамм");
+        }
+        return counters[n];
+    }
+
+    /**
+     * Возвращает список из limit самых частых n-грамм, в том же виде, что и FrequencyAnalyzer.
+     *
+     * @param n - длина n-граммы
+     * @param limit - количество элементов в списке
+     * @return List<Map.Entry<?, Integer>> - n-граммы с их частотами
+     */
+    public List<Map.Entry<?, Integer>> getTopNGrams(int n, int limit) {
+        return new ArrayList<>(getCounter(n).top(limit));
+    }
+}
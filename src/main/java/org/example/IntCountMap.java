@@ -0,0 +1,129 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Счетчики с ключами int без упаковки в Integer.
+ * Открытая адресация с линейным пробированием: ключи и значения лежат в двух
+ * параллельных массивах, поэтому увеличение счетчика не создает объектов.
+ * Ключи должны быть неотрицательными (-1 обозначает пустую ячейку).
+ */
+public final class IntCountMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public IntCountMap() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize - ожидаемое количество различных ключей
+     */
+    public IntCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /** Перемешивает биты ключа, чтобы соседние n-граммы не попадали в соседние ячейки */
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Увеличивает счетчик ключа на delta.
+     *
+     * @param key - неотрицательный ключ
+     * @param delta - приращение
+     */
+    public void add(int key, int delta) {
+        int i = slot(key);
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                values[i] += delta;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = delta;
+                // Поддерживаем заполненность не выше 1/2, чтобы цепочки пробирования оставались короткими
+                if (++size * 2 > keys.length) {
+                    rehash();
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Возвращает значение счетчика.
+     *
+     * @param key - ключ
+     * @return int - счетчик или 0, если ключа нет
+     */
+    public int get(int key) {
+        int i = slot(key);
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return 0;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** @return int - количество различных ключей */
+    public int size() {
+        return size;
+    }
+
+    /** Обработчик пары (ключ, счетчик) без упаковки */
+    public interface EntryConsumer {
+        void accept(int key, int count);
+    }
+
+    /**
+     * Перебирает все ключи с их счетчиками в порядке ячеек таблицы.
+     *
+     * @param consumer - обработчик пар
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
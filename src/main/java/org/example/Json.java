@@ -0,0 +1,50 @@
+package org.example;
+
+/**
+ * Минимальные средства записи JSON без внешних библиотек.
+ */
+public final class Json {
+    private Json() {
+    }
+
+    /**
+     * Записывает строку как JSON-литерал в кавычках с экранированием.
+     *
+     * @param value - строка (null записывается как null)
+     * @return String - JSON-литерал
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,473 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Определение длины ключа Виженера по автокорреляции шифротекста.
+ *
+ * Для каждого сдвига (лага) L считается доля совпадений букв в позициях i и i+L.
+ * Если L кратно длине ключа, обе буквы зашифрованы одной буквой ключа и доля
+ * совпадений близка к индексу совпадений русского языка (~0.055), иначе - к
+ * случайному 1/33. Совпадения для всех лагов сразу считаются через БПФ:
+ * автокорреляция индикатора каждой буквы равна обратному БПФ от квадрата
+ * модуля ее спектра, поэтому общая сложность O(n log n) и не зависит от
+ * наибольшей проверяемой длины ключа. Пока лагов не больше нескольких тысяч,
+ * быстрее прямой перебор лагов по битовым плоскостям (O(n * maxLag / 64)
+ * операций над словами): метод выбирается по оценке стоимости, результаты
+ * у обоих одинаковые.
+ *
+ * Кандидаты ранжируются по средней доле совпадений на лагах, кратных L. Кратные
+ * истинной длины набирают столько же, поэтому из лучшего кандидата выбирается
+ * наименьший делитель с почти таким же результатом. Кандидаты также проверяются
+ * по Фридману: средний индекс совпадений столбцов шифротекста должен быть
+ * близок к индексу совпадений языка. Лаг 1 не учитывается: соседние буквы
+ * русского текста совпадают заметно реже, чем буквы на большем расстоянии.
+ */
+public final class KeyLengthDetector {
+    /** Наибольшая проверяемая длина ключа по умолчанию */
+    public static final int DEFAULT_MAX_LENGTH = 500;
+    /** Индекс совпадений русского текста */
+    public static final double RUSSIAN_IOC = 0.0553;
+    /** Индекс совпадений случайного текста над алфавитом из 33 букв */
+    public static final double RANDOM_IOC = 1.0 / CipherKernel.SIZE;
+
+    /** Для анализа достаточно начала длинного шифротекста; ограничивает размер БПФ */
+    private static final int MAX_SAMPLE = 1 << 15;
+    /** Наибольший лаг в кратных наибольшей проверяемой длины ключа */
+    private static final int MULTIPLES = 4;
+    /** Минимальное среднее количество букв в столбце, при котором длина еще проверяется */
+    private static final int MIN_COLUMN_LETTERS = 20;
+    /** Сколько лучших кандидатов проверяется индексом совпадений столбцов */
+    private static final int CROSS_CHECK = 10;
+    /** Какую долю превышения над случайным текстом должен сохранить делитель лучшего кандидата */
+    private static final double DIVISOR_TOLERANCE = 0.75;
+    /** Бит в индексе буквы (33 < 2^6) и количество битовых плоскостей прямого перебора с маской букв */
+    private static final int INDEX_BITS = 6;
+    private static final int PLANES = INDEX_BITS + 1;
+
+    private KeyLengthDetector() {
+    }
+
+    /**
+     * Кандидат длины ключа.
+     */
+    public static final class Candidate {
+        private final int length;
+        private final double coincidence;
+        private final double contrast;
+        private double columnIoc = Double.NaN;
+
+        Candidate(int length, double coincidence, double contrast) {
+            this.length = length;
+            this.coincidence = coincidence;
+            this.contrast = contrast;
+        }
+
+        /** @return int - длина ключа */
+        public int getLength() {
+            return length;
+        }
+
+        /** @return double - средняя доля совпадений на лагах, кратных длине */
+        public double getCoincidence() {
+            return coincidence;
+        }
+
+        /** @return double - превышение доли совпадений на кратных лагах над остальными лагами */
+        public double getContrast() {
+            return contrast;
+        }
+
+        /** @return double - средний индекс совпадений столбцов (NaN, если не проверялся) */
+        public double getColumnIoc() {
+            return columnIoc;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d (совпадения %.4f, контраст %.4f, IoC столбцов %.4f)",
+                    length, coincidence, contrast, columnIoc);
+        }
+    }
+
+    /**
+     * Определяет наиболее вероятную длину ключа.
+     *
+     * @param cipherText - шифротекст
+     * @param maxLength - наибольшая проверяемая длина ключа
+     * @return int - длина ключа (1, если текст слишком короткий для анализа)
+     */
+    public static int detect(CharSequence cipherText, int maxLength) {
+        List<Candidate> candidates = rank(cipherText, maxLength);
+        if (candidates.isEmpty()) {
+            return 1;
+        }
+        // Лучший кандидат, столбцы которого похожи на русский текст
+        double threshold = (RUSSIAN_IOC + RANDOM_IOC) / 2;
+        Candidate best = candidates.get(0);
+        for (Candidate candidate : candidates) {
+            if (Double.isNaN(candidate.columnIoc)) {
+                break;
+            }
+            if (candidate.columnIoc >= threshold) {
+                best = candidate;
+                break;
+            }
+        }
+        // Кратные истинной длины не хуже нее самой, поэтому берем наименьший подходящий делитель
+        double[] byLength = new double[best.length + 1];
+        for (Candidate candidate : candidates) {
+            if (candidate.length <= best.length) {
+                byLength[candidate.length] = candidate.coincidence;
+            }
+        }
+        double required = DIVISOR_TOLERANCE * (best.coincidence - RANDOM_IOC);
+        for (int d = 1; d < best.length; d++) {
+            if (best.length % d == 0 && byLength[d] - RANDOM_IOC >= required) {
+                return d;
+            }
+        }
+        return best.length;
+    }
+
+    /**
+     * Ранжирует длины ключа от 1 до maxLength по убыванию доли совпадений на кратных лагах.
+     * У первых CROSS_CHECK кандидатов заполнен индекс совпадений столбцов.
+     *
+     * @param cipherText - шифротекст
+     * @param maxLength - наибольшая проверяемая длина ключа
+     * @return List<Candidate> - кандидаты, лучший первым
+     */
+    public static List<Candidate> rank(CharSequence cipherText, int maxLength) {
+        int length = Math.min(cipherText.length(), MAX_SAMPLE);
+        byte[] indices = EncodedText.indicesOf(cipherText, length);
+        int letters = 0;
+        for (int i = 0; i < length; i++) {
+            if (indices[i] >= 0) {
+                letters++;
+            }
+        }
+        int bound = Math.min(maxLength, letters / MIN_COLUMN_LETTERS);
+        if (bound < 1) {
+            return Collections.emptyList();
+        }
+        // Лаги до MULTIPLES * bound; длина выборки подбирается так, чтобы выборка
+        // вместе с лагами поместилась в БПФ размера MAX_SAMPLE
+        int maxLag = Math.min(MULTIPLES * bound, length / 2);
+        if (length + maxLag > MAX_SAMPLE) {
+            indices = Arrays.copyOf(indices, MAX_SAMPLE - maxLag);
+        }
+        double[] kappa = directCost(indices.length, maxLag) <= fftCost(fftSize(indices.length, maxLag))
+                ? coincidenceRatesDirect(indices, maxLag) : coincidenceRates(indices, maxLag);
+
+        double allLags = 0;
+        for (int lag = 2; lag <= maxLag; lag++) {
+            allLags += kappa[lag];
+        }
+        List<Candidate> candidates = new ArrayList<>(bound);
+        for (int len = 1; len <= bound && 2 * len <= maxLag; len++) {
+            // Усредняем все кратные лаги диапазона: у коротких лагов доля совпадений
+            // в открытом тексте ниже, и малые длины иначе оказались бы в проигрыше
+            double onMultiples = 0;
+            int onCount = 0;
+            for (int lag = Math.max(2, len); lag <= maxLag; lag += len) {
+                onMultiples += kappa[lag];
+                onCount++;
+            }
+            int offCount = maxLag - 1 - onCount;
+            // Для длины 1 все лаги кратные, сравниваем со случайным текстом
+            double baseline = offCount > 0 ? (allLags - onMultiples) / offCount : RANDOM_IOC;
+            onMultiples /= onCount;
+            candidates.add(new Candidate(len, onMultiples, onMultiples - baseline));
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> -c.coincidence).thenComparingInt(c -> c.length));
+        for (int i = 0; i < Math.min(CROSS_CHECK, candidates.size()); i++) {
+            candidates.get(i).columnIoc = columnIoc(indices, candidates.get(i).length);
+        }
+        return candidates;
+    }
+
+    /**
+     * Оценка длины ключа по формуле Фридмана из индекса совпадений всего текста.
+     *
+     * @param cipherText - шифротекст
+     * @return double - оценка длины ключа (бесконечность для почти случайного текста)
+     */
+    public static double friedmanEstimate(CharSequence cipherText) {
+        int[] counts = new int[CipherKernel.SIZE];
+        long total = 0;
+        for (int i = 0; i < cipherText.length(); i++) {
+            int index = CipherKernel.indexOf(cipherText.charAt(i));
+            if (index >= 0) {
+                counts[index]++;
+                total++;
+            }
+        }
+        return friedmanEstimate(indexOfCoincidence(counts, total));
+    }
+
+    /**
+     * Оценка длины ключа по формуле Фридмана из готового индекса совпадений.
+     *
+     * @param ioc - индекс совпадений шифротекста
+     * @return double - оценка длины ключа (бесконечность для почти случайного текста)
+     */
+    public static double friedmanEstimate(double ioc) {
+        return ioc <= RANDOM_IOC ? Double.POSITIVE_INFINITY : (RUSSIAN_IOC - RANDOM_IOC) / (ioc - RANDOM_IOC);
+    }
+
+    /**
+     * Индекс совпадений по гистограмме букв: вероятность того, что две случайно
+     * выбранные буквы текста совпадают.
+     *
+     * @param counts - количество каждой буквы
+     * @param total - общее количество букв
+     * @return double - индекс совпадений (0 для текста короче двух букв)
+     */
+    public static double indexOfCoincidence(int[] counts, long total) {
+        if (total < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for (int count : counts) {
+            sum += (double) count * (count - 1);
+        }
+        return sum / ((double) total * (total - 1));
+    }
+
+    /**
+     * Средний индекс совпадений столбцов: буквы в позициях с одинаковым остатком
+     * от деления на длину ключа зашифрованы одной буквой ключа.
+     */
+    private static double columnIoc(byte[] indices, int keyLength) {
+        int[][] counts = new int[keyLength][CipherKernel.SIZE];
+        long[] totals = new long[keyLength];
+        int column = 0;
+        for (byte index : indices) {
+            if (index >= 0) {
+                counts[column][index]++;
+                totals[column]++;
+            }
+            if (++column == keyLength) {
+                column = 0;
+            }
+        }
+        double sum = 0;
+        for (int i = 0; i < keyLength; i++) {
+            sum += indexOfCoincidence(counts[i], totals[i]);
+        }
+        return sum / keyLength;
+    }
+
+    /**
+     * Размер БПФ для выборки и лагов: степень двойки не меньше length + maxLag,
+     * чтобы циклическая корреляция не заворачивалась на проверяемые лаги.
+     */
+    private static int fftSize(int length, int maxLag) {
+        int needed = Math.max(1, length + maxLag);
+        return needed == Integer.highestOneBit(needed) ? needed : Integer.highestOneBit(needed) << 1;
+    }
+
+    // Оценки в условных единицах (бабочка БПФ), откалиброваны замером на input.txt:
+    // слово из 64 позиций на один лаг прямого перебора стоит около трех бабочек
+    private static long directCost(int length, int maxLag) {
+        return (long) ((length + 63) >>> 6) * maxLag * 3;
+    }
+
+    private static long fftCost(int size) {
+        return 18L * size * Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * То же, что coincidenceRates, прямым перебором лагов по битовым плоскостям:
+     * 6 бит индекса буквы и маска "здесь буква", по 64 позиции в long. Совпадения
+     * 64 позиций на одном лаге считаются десятком операций над словами и bitCount,
+     * поэтому при небольшом maxLag это быстрее 18 БПФ по всей выборке.
+     */
+    private static double[] coincidenceRatesDirect(byte[] indices, int maxLag) {
+        int n = indices.length;
+        int words = (n + 63) >>> 6;
+        // Плоскости слова k лежат подряд: planes[k * PLANES + b]; лишнее слово в конце для сдвига
+        long[] planes = new long[(words + 1) * PLANES];
+        for (int i = 0; i < n; i++) {
+            int index = indices[i];
+            if (index >= 0) {
+                int base = (i >>> 6) * PLANES;
+                long bit = 1L << i;
+                for (int b = 0; b < INDEX_BITS; b++) {
+                    if ((index >>> b & 1) != 0) {
+                        planes[base + b] |= bit;
+                    }
+                }
+                planes[base + INDEX_BITS] |= bit;
+            }
+        }
+        double[] rates = new double[maxLag + 1];
+        // Лаги с одинаковым остатком от деления на 64 отличаются сдвигом на целые слова,
+        // поэтому плоскости сдвигаются на shiftBits один раз на все такие лаги
+        long[] shifted = new long[words * PLANES];
+        for (int shiftBits = 0; shiftBits < 64 && shiftBits <= maxLag; shiftBits++) {
+            int back = 63 - shiftBits;
+            for (int j = 0; j < shifted.length; j++) {
+                // Биты позиций i + shiftBits на местах i; при shiftBits == 0 второе слагаемое равно нулю
+                shifted[j] = planes[j] >>> shiftBits | (planes[j + PLANES] << 1) << back;
+            }
+            for (int lag = shiftBits == 0 ? 64 : shiftBits; lag <= maxLag; lag += 64) {
+                int shiftWords = lag >>> 6;
+                long matches = 0;
+                long pairs = 0;
+                for (int k = 0; k + shiftWords < words; k++) {
+                    int here = k * PLANES;
+                    int there = (k + shiftWords) * PLANES;
+                    long mask = planes[here + INDEX_BITS] & shifted[there + INDEX_BITS];
+                    long differ = 0;
+                    for (int b = 0; b < INDEX_BITS; b++) {
+                        differ |= planes[here + b] ^ shifted[there + b];
+                    }
+                    pairs += Long.bitCount(mask);
+                    matches += Long.bitCount(mask & ~differ);
+                }
+                rates[lag] = pairs > 0 ? (double) matches / pairs : 0;
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Доля совпадающих букв для лагов 0..maxLag: количество позиций i, где в i и i+L
+     * стоит одна и та же буква, деленное на количество позиций, где в обеих стоят буквы.
+     *
+     * Индикаторы букв обрабатываются парами: одна буква кладется в действительную
+     * часть, другая в мнимую, и спектры обеих восстанавливаются из одного БПФ.
+     * 33 буквы и маска "здесь буква" дают ровно 17 прямых БПФ и одно обратное.
+     */
+    private static double[] coincidenceRates(byte[] indices, int maxLag) {
+        int size = fftSize(indices.length, maxLag);
+        double[] re = new double[size];
+        double[] im = new double[size];
+        // Сумма квадратов модулей спектров букв и квадрат модуля спектра маски
+        double[] letterPower = new double[size];
+        double[] maskPower = new double[size];
+        FFT fft = new FFT(size);
+
+        for (int a = 0; a < CipherKernel.SIZE; a += 2) {
+            int b = a + 1; // b == SIZE означает маску
+            Arrays.fill(re, 0);
+            Arrays.fill(im, 0);
+            for (int i = 0; i < indices.length; i++) {
+                int index = indices[i];
+                if (index == a) {
+                    re[i] = 1;
+                }
+                if (b < CipherKernel.SIZE ? index == b : index >= 0) {
+                    im[i] = 1;
+                }
+            }
+            fft.transform(re, im, false);
+            for (int k = 0; k < size; k++) {
+                int m = (size - k) & (size - 1);
+                // X = A + iB, A[k] = (X[k] + conj X[-k]) / 2, B[k] = (X[k] - conj X[-k]) / 2i
+                double ar = (re[k] + re[m]) / 2;
+                double ai = (im[k] - im[m]) / 2;
+                double br = (im[k] + im[m]) / 2;
+                double bi = (re[m] - re[k]) / 2;
+                letterPower[k] += ar * ar + ai * ai;
+                double bPower = br * br + bi * bi;
+                if (b < CipherKernel.SIZE) {
+                    letterPower[k] += bPower;
+                } else {
+                    maskPower[k] = bPower;
+                }
+            }
+        }
+
+        // Спектры мощности действительны и четны, поэтому их обратные БПФ тоже действительны
+        // и выполняются одним вызовом: совпадения букв в re, пары букв в im
+        System.arraycopy(letterPower, 0, re, 0, size);
+        System.arraycopy(maskPower, 0, im, 0, size);
+        fft.transform(re, im, true);
+
+        double[] rates = new double[maxLag + 1];
+        for (int lag = 1; lag <= maxLag; lag++) {
+            long matches = Math.round(re[lag]);
+            long pairs = Math.round(im[lag]);
+            rates[lag] = pairs > 0 ? (double) matches / pairs : 0;
+        }
+        return rates;
+    }
+
+    /**
+     * Итеративное БПФ по основанию 2 с заранее вычисленными поворотными множителями.
+     * Множители каждого этапа лежат в таблице подряд, чтобы внутренний цикл
+     * читал память последовательно.
+     */
+    private static final class FFT {
+        private final int size;
+        /** Множители этапа с полушириной half занимают индексы half-1 .. 2*half-2 */
+        private final double[] cos;
+        private final double[] sin;
+        private final int[] reversed;
+
+        FFT(int size) {
+            this.size = size;
+            this.cos = new double[Math.max(1, size - 1)];
+            this.sin = new double[Math.max(1, size - 1)];
+            for (int half = 1; half < size; half <<= 1) {
+                for (int k = 0; k < half; k++) {
+                    cos[half - 1 + k] = Math.cos(Math.PI * k / half);
+                    sin[half - 1 + k] = Math.sin(Math.PI * k / half);
+                }
+            }
+            this.reversed = new int[size];
+            int bits = Integer.numberOfTrailingZeros(size);
+            for (int i = 0; i < size; i++) {
+                reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+        }
+
+        /**
+         * Преобразует массивы на месте. Обратное преобразование делится на size.
+         */
+        void transform(double[] re, double[] im, boolean inverse) {
+            for (int i = 0; i < size; i++) {
+                int j = reversed[i];
+                if (i < j) {
+                    double t = re[i];
+                    re[i] = re[j];
+                    re[j] = t;
+                    t = im[i];
+                    im[i] = im[j];
+                    im[j] = t;
+                }
+            }
+            double sign = inverse ? 1 : -1;
+            for (int half = 1; half < size; half <<= 1) {
+                int table = half - 1;
+                for (int start = 0; start < size; start += half << 1) {
+                    for (int k = 0; k < half; k++) {
+                        double wr = cos[table + k];
+                        double wi = sign * sin[table + k];
+                        int p = start + k;
+                        int q = p + half;
+                        double tr = re[q] * wr - im[q] * wi;
+                        double ti = re[q] * wi + im[q] * wr;
+                        re[q] = re[p] - tr;
+                        im[q] = im[p] - ti;
+                        re[p] += tr;
+                        im[p] += ti;
+                    }
+                }
+            }
+            if (inverse) {
+                for (int i = 0; i < size; i++) {
+                    re[i] /= size;
+                    im[i] /= size;
+                }
+            }
+        }
+    }
+}
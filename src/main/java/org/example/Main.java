@@ -1,5 +1,17 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -7,51 +19,290 @@ public class Main {
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
     private static final int CAESAR_SHIFT = 5;
     private static final String VIGENERE_KEY = "КЛЮЧ"; // Ключ длиной 4 символа
+    private static final String LARGE_TEXT_SNAPSHOT = "largeText.fsnap"; // Снимок частот для режима --snapshot
+    private static final String QUADGRAM_TABLE = "quadgrams.bin"; // Таблица log-вероятностей квадграмм
+    private static final String KEY_SEARCH_CHECKPOINT = "keySearch.ckpt"; // Контрольная точка перебора ключей
+    private static final int KEY_SEARCH_MAX_LENGTH = 5; // Длина ключа для --keysearch по умолчанию
+    private static final int MONITOR_PERIOD_SECONDS = 5; // Период вывода оценок в режиме --monitor
+    private static final long MONITOR_POLL_MILLIS = 500; // Период проверки дописываемого файла
+    private static final int STREAM_SAMPLE_CHARS = 1 << 20; // Объем шифротекста для криптоанализа в потоковом режиме
+    // Потоки конвейера: этапы записи в основном ждут диск, поэтому потоков не меньше четырех
+    private static final int PIPELINE_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
 
     public static void main(String[] args) {
         // Настройка логирования
         LOGGER.setLevel(Level.INFO);
+        // Замеры этапов включаются флагом --metrics, отчет пишется в runReport.json
+        PipelineMetrics metrics = Arrays.asList(args).contains("--metrics")
+                ? PipelineMetrics.enabled() : PipelineMetrics.disabled();
 
-        // Генерация зашифрованных текстов
-        LOGGER.info("Чтение исходного текста из input.txt");
-        String inputText = FileHandler.readFile("input.txt");
-        if (inputText.length() < 2000) {
-            LOGGER.warning("Текст в input.txt короче 2000 символов!");
-        }
-
-        LOGGER.info("Генерация outputCaesar.txt с шифром Цезаря, сдвиг = " + CAESAR_SHIFT);
-        String caesarCipherText = CipherUtils.encryptCaesar(inputText, CAESAR_SHIFT);
-        FileHandler.writeFile("outputCaesar.txt", caesarCipherText);
-
-        LOGGER.info("Генерация outputVigener.txt с шифром Виженера, ключ = " + VIGENERE_KEY);
-        String vigenereCipherText = CipherUtils.encryptVigenere(inputText, VIGENERE_KEY);
-        FileHandler.writeFile("outputVigener.txt", vigenereCipherText);
-
-        // Криптоанализ Цезаря
-        LOGGER.info("Анализ шифра Цезаря...");
-        int caesarShift = CaesarCipherAnalyzer.findCaesarShift(caesarCipherText);
-        String caesarDecrypted = CaesarCipherAnalyzer.decrypt(caesarCipherText, caesarShift);
-        FileHandler.writeFile("decryptedCaesar.txt", caesarDecrypted);
-        LOGGER.info("Цезарь: Найденный сдвиг = " + caesarShift);
-
-        // Криптоанализ Виженера
-        LOGGER.info("Анализ шифра Виженера...");
-        int keyLength = VigenereCipherAnalyzer.findKeyLength(vigenereCipherText);
-        String vigenereKey = VigenereCipherAnalyzer.findKey(vigenereCipherText, keyLength);
-        String vigenereDecrypted = VigenereCipherAnalyzer.decrypt(vigenereCipherText, vigenereKey);
-        FileHandler.writeFile("decryptedVigener.txt", vigenereDecrypted);
-        LOGGER.info("Виженер: Длина ключа = " + keyLength + ", Найденный ключ = " + vigenereKey);
-
-        // Частотный анализ большого текста
-        LOGGER.info("Чтение большого текста из largeText.txt для частотного анализа");
-        String largeText = FileHandler.readFile("largeText.txt");
-        if (largeText.length() < 100000) {
-            LOGGER.warning("Текст в largeText.txt короче 100000 символов!");
-        }
-        FrequencyAnalyzer largeTextAnalyzer = new FrequencyAnalyzer(largeText);
-        LOGGER.info("Генерация диаграмм...");
-        ChartGenerator.generateChart("Топ-10 букв", largeTextAnalyzer.getTopLetters(10), "topLetters.png");
-        ChartGenerator.generateChart("Топ-10 биграмм", largeTextAnalyzer.getTopBigrams(10), "topBigrams.png");
+        int batchIndex = Arrays.asList(args).indexOf("--batch");
+        if (batchIndex >= 0) {
+            // Пакетный режим: --batch <каталог> [файл результатов]
+            if (batchIndex + 1 >= args.length) {
+                throw new IllegalArgumentException("Для --batch нужно указать каталог с шифротекстами");
+            }
+            Path output = batchIndex + 2 < args.length
+                    ? Paths.get(args[batchIndex + 2]) : FileHandler.outputPath("batchResults.jsonl");
+            QuadgramTable quadgrams = QuadgramTable.loadOrBuild(FileHandler.inputPath("largeText.txt"), FileHandler.outputPath(QUADGRAM_TABLE));
+            new BatchCracker(BatchCracker.DEFAULT_MAX_OPEN_FILES, quadgrams).run(Paths.get(args[batchIndex + 1]), output);
+            return;
+        }
+
+        int serverIndex = Arrays.asList(args).indexOf("--server");
+        if (serverIndex >= 0) {
+            // Сервер анализа: --server [порт]; работает до завершения процесса
+            int port = serverIndex + 1 < args.length && !args[serverIndex + 1].startsWith("--")
+                    ? Integer.parseInt(args[serverIndex + 1]) : AnalysisServer.DEFAULT_PORT;
+            QuadgramTable quadgrams = QuadgramTable.loadOrBuild(FileHandler.inputPath("largeText.txt"), FileHandler.outputPath(QUADGRAM_TABLE));
+            AnalysisServer server = new AnalysisServer(port, quadgrams);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            return;
+        }
+
+        int monitorIndex = Arrays.asList(args).indexOf("--monitor");
+        if (monitorIndex >= 0) {
+            // Наблюдение за потоком: --monitor [файл] [--window <символов>]; без файла читается стандартный ввод
+            runMonitor(args, monitorIndex);
+            return;
+        }
+
+        int searchIndex = Arrays.asList(args).indexOf("--keysearch");
+        if (searchIndex >= 0) {
+            // Перебор ключей Виженера: --keysearch <шифротекст> [длина ключа] [--dictionary <файл ключей>]
+            if (searchIndex + 1 >= args.length) {
+                throw new IllegalArgumentException("Для --keysearch нужно указать файл с шифротекстом");
+            }
+            runKeySearch(args, searchIndex);
+            return;
+        }
+
+        // Этапы объявляются графом зависимостей: ветви Цезаря, Виженера и частотного
+        // анализа большого текста выполняются параллельно, запись файлов - отдельными этапами
+        Pipeline pipeline = new Pipeline(PIPELINE_THREADS, metrics);
+        // Таблица квадграмм строится по largeText.txt один раз и затем отображается в память
+        Pipeline.Stage<QuadgramTable> quadgrams = pipeline.stage("quadgramTable",
+                () -> QuadgramTable.loadOrBuild(FileHandler.inputPath("largeText.txt"), FileHandler.outputPath(QUADGRAM_TABLE)));
+        if (Arrays.asList(args).contains("--stream")) {
+            declareStreaming(pipeline, quadgrams);
+        } else {
+            declareInMemory(pipeline, quadgrams);
+        }
+        declareFrequencyAnalysis(pipeline, Arrays.asList(args).contains("--snapshot"));
+
+        try {
+            pipeline.run();
+        } finally {
+            metrics.writeReport(FileHandler.outputPath("runReport.json"));
+        }
         LOGGER.info("Программа завершена успешно");
     }
+
+    /**
+     * Частотный анализ потока в скользящем окне с выводом оценок каждые
+     * MONITOR_PERIOD_SECONDS секунд. Файл читается как tail -f до завершения
+     * процесса, стандартный ввод - до конца.
+     */
+    private static void runMonitor(String[] args, int monitorIndex) {
+        int windowIndex = Arrays.asList(args).indexOf("--window");
+        int window = windowIndex >= 0 && windowIndex + 1 < args.length
+                ? Integer.parseInt(args[windowIndex + 1]) : OnlineFrequencyAnalyzer.DEFAULT_WINDOW;
+        OnlineFrequencyAnalyzer analyzer = new OnlineFrequencyAnalyzer(window, OnlineFrequencyAnalyzer.DEFAULT_MAX_KEY_LENGTH);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "monitor-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> LOGGER.info("Окно: " + analyzer.estimate()),
+                MONITOR_PERIOD_SECONDS, MONITOR_PERIOD_SECONDS, TimeUnit.SECONDS);
+        try {
+            if (monitorIndex + 1 < args.length && !args[monitorIndex + 1].startsWith("--")) {
+                Path file = Paths.get(args[monitorIndex + 1]);
+                LOGGER.info("Наблюдение за файлом " + file + ", окно " + window + " символов");
+                analyzer.follow(file, MONITOR_POLL_MILLIS);
+            } else {
+                LOGGER.info("Чтение стандартного ввода, окно " + window + " символов");
+                analyzer.consume(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            }
+        } finally {
+            reporter.shutdownNow();
+        }
+        LOGGER.info("Итог: " + analyzer.estimate());
+    }
+
+    /**
+     * Перебор ключей Виженера по словарю или полным перебором коротких ключей
+     * с контрольной точкой в keySearch.ckpt.
+     */
+    private static void runKeySearch(String[] args, int searchIndex) {
+        String cipherText = FileHandler.readText(Paths.get(args[searchIndex + 1]));
+        QuadgramTable quadgrams = QuadgramTable.loadOrBuild(FileHandler.inputPath("largeText.txt"), FileHandler.outputPath(QUADGRAM_TABLE));
+        VigenereKeySearch search = new VigenereKeySearch(quadgrams, Runtime.getRuntime().availableProcessors(),
+                VigenereKeySearch.DEFAULT_PREFIX_LENGTH);
+        int dictionaryIndex = Arrays.asList(args).indexOf("--dictionary");
+        VigenereKeySearch.Result result;
+        if (dictionaryIndex >= 0 && dictionaryIndex + 1 < args.length) {
+            Path dictionary = Paths.get(args[dictionaryIndex + 1]);
+            List<String> keys;
+            try {
+                keys = Files.readAllLines(dictionary, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка чтения файла: " + dictionary, e);
+            }
+            result = search.searchDictionary(cipherText, keys, VigenereKeySearch.DEFAULT_TOP);
+        } else {
+            int maxLength = searchIndex + 2 < args.length && !args[searchIndex + 2].startsWith("--")
+                    ? Integer.parseInt(args[searchIndex + 2]) : KEY_SEARCH_MAX_LENGTH;
+            result = search.searchExhaustive(cipherText, maxLength, VigenereKeySearch.DEFAULT_TOP,
+                    FileHandler.outputPath(KEY_SEARCH_CHECKPOINT));
+        }
+        for (VigenereKeySearch.Candidate candidate : result.getCandidates()) {
+            LOGGER.info("Кандидат: " + candidate);
+        }
+        LOGGER.info(String.format("Скорость перебора: %.0f ключей/с", result.getKeysPerSecond()));
+    }
+
+    /**
+     * Шифрование и криптоанализ с загрузкой input.txt в память целиком.
+     */
+    private static void declareInMemory(Pipeline pipeline, Pipeline.Stage<QuadgramTable> quadgrams) {
+        // Текст кодируется индексами алфавита один раз при чтении (EncodedText)
+        Pipeline.Stage<EncodedText> inputText = pipeline.stage("read", () -> {
+            LOGGER.info("Чтение исходного текста из input.txt");
+            EncodedText text = FileHandler.readEncoded("input.txt");
+            if (text.length() < 2000) {
+                LOGGER.warning("Текст в input.txt короче 2000 символов!");
+            }
+            return text;
+        });
+
+        // Цезарь: шифрование, запись и криптоанализ
+        Pipeline.Stage<EncodedText> caesarCipherText = pipeline.stage("encryptCaesar", inputText, text -> {
+            LOGGER.info("Генерация outputCaesar.txt с шифром Цезаря, сдвиг = " + CAESAR_SHIFT);
+            return CipherUtils.encryptCaesar(text, CAESAR_SHIFT);
+        });
+        pipeline.sink("writeOutputCaesar", caesarCipherText, text -> FileHandler.writeFile("outputCaesar.txt", text));
+        Pipeline.Stage<Integer> caesarShift = pipeline.stage("shiftSearch", caesarCipherText, text -> {
+            LOGGER.info("Анализ шифра Цезаря...");
+            int shift = CaesarCipherAnalyzer.findCaesarShift(text);
+            LOGGER.info("Цезарь: Найденный сдвиг = " + shift);
+            return shift;
+        });
+        Pipeline.Stage<EncodedText> caesarDecrypted = pipeline.stage("decryptCaesar", caesarCipherText, caesarShift,
+                CaesarCipherAnalyzer::decrypt);
+        pipeline.sink("writeDecryptedCaesar", caesarDecrypted, text -> FileHandler.writeFile("decryptedCaesar.txt", text));
+
+        // Виженер: шифрование, запись и криптоанализ
+        Pipeline.Stage<EncodedText> vigenereCipherText = pipeline.stage("encryptVigenere", inputText, text -> {
+            LOGGER.info("Генерация outputVigener.txt с шифром Виженера, ключ = " + VIGENERE_KEY);
+            return CipherUtils.encryptVigenere(text, VIGENERE_KEY);
+        });
+        pipeline.sink("writeOutputVigenere", vigenereCipherText, text -> FileHandler.writeFile("outputVigener.txt", text));
+        Pipeline.Stage<Integer> keyLength = pipeline.stage("keyLengthSearch", vigenereCipherText, text -> {
+            LOGGER.info("Анализ шифра Виженера...");
+            return VigenereCipherAnalyzer.findKeyLength(text);
+        });
+        Pipeline.Stage<String> columnKey = pipeline.stage("keyRecovery", vigenereCipherText, keyLength,
+                VigenereCipherAnalyzer::findKey);
+        Pipeline.Stage<String> vigenereKey = pipeline.stage("keyRefinement", vigenereCipherText, columnKey, quadgrams,
+                Main::refineKey);
+        Pipeline.Stage<EncodedText> vigenereDecrypted = pipeline.stage("decryptVigenere", vigenereCipherText, vigenereKey,
+                VigenereCipherAnalyzer::decrypt);
+        pipeline.sink("writeDecryptedVigenere", vigenereDecrypted, text -> FileHandler.writeFile("decryptedVigener.txt", text));
+    }
+
+    /**
+     * Те же шаги в потоковом режиме: шифрование и расшифровка идут блоками через
+     * StreamingCipher и не зависят от размера файла, для поиска ключей читается
+     * только начало шифротекста. Этапы передают друг другу пути к готовым файлам.
+     */
+    private static void declareStreaming(Pipeline pipeline, Pipeline.Stage<QuadgramTable> quadgrams) {
+        Path input = FileHandler.inputPath("input.txt");
+
+        // Цезарь
+        Pipeline.Stage<Path> caesarCipherFile = pipeline.stage("encryptCaesar", () -> {
+            LOGGER.info("Потоковая генерация outputCaesar.txt с шифром Цезаря, сдвиг = " + CAESAR_SHIFT);
+            StreamingCipher.encryptCaesar(input, FileHandler.outputPath("outputCaesar.txt"), CAESAR_SHIFT);
+            return FileHandler.outputPath("outputCaesar.txt");
+        });
+        Pipeline.Stage<String> caesarSample = pipeline.stage("readCaesarSample", caesarCipherFile,
+                file -> StreamingCipher.readPrefix(file, STREAM_SAMPLE_CHARS));
+        Pipeline.Stage<Integer> caesarShift = pipeline.stage("shiftSearch", caesarSample, sample -> {
+            LOGGER.info("Анализ шифра Цезаря...");
+            int shift = CaesarCipherAnalyzer.findCaesarShift(sample);
+            LOGGER.info("Цезарь: Найденный сдвиг = " + shift);
+            return shift;
+        });
+        pipeline.stage("decryptCaesar", caesarCipherFile, caesarShift, (file, shift) -> {
+            StreamingCipher.decryptCaesar(file, FileHandler.outputPath("decryptedCaesar.txt"), shift);
+            return FileHandler.outputPath("decryptedCaesar.txt");
+        });
+
+        // Виженер
+        Pipeline.Stage<Path> vigenereCipherFile = pipeline.stage("encryptVigenere", () -> {
+            LOGGER.info("Потоковая генерация outputVigener.txt с шифром Виженера, ключ = " + VIGENERE_KEY);
+            StreamingCipher.encryptVigenere(input, FileHandler.outputPath("outputVigener.txt"), VIGENERE_KEY);
+            return FileHandler.outputPath("outputVigener.txt");
+        });
+        Pipeline.Stage<String> vigenereSample = pipeline.stage("readVigenereSample", vigenereCipherFile,
+                file -> StreamingCipher.readPrefix(file, STREAM_SAMPLE_CHARS));
+        Pipeline.Stage<Integer> keyLength = pipeline.stage("keyLengthSearch", vigenereSample, sample -> {
+            LOGGER.info("Анализ шифра Виженера...");
+            return VigenereCipherAnalyzer.findKeyLength(sample);
+        });
+        Pipeline.Stage<String> columnKey = pipeline.stage("keyRecovery", vigenereSample, keyLength,
+                VigenereCipherAnalyzer::findKey);
+        Pipeline.Stage<String> vigenereKey = pipeline.stage("keyRefinement", vigenereSample, columnKey, quadgrams,
+                Main::refineKey);
+        pipeline.stage("decryptVigenere", vigenereCipherFile, vigenereKey, (file, key) -> {
+            StreamingCipher.decryptVigenere(file, FileHandler.outputPath("decryptedVigener.txt"), key);
+            return FileHandler.outputPath("decryptedVigener.txt");
+        });
+    }
+
+    // Ключ по столбцам уточняется по квадграммам открытого текста
+    private static String refineKey(CharSequence cipherText, String columnKey, QuadgramTable quadgrams) {
+        String key = VigenereKeyRefiner.refine(cipherText, columnKey, quadgrams);
+        if (!key.equals(columnKey)) {
+            LOGGER.info("Ключ по столбцам " + columnKey + " уточнен по квадграммам");
+        }
+        LOGGER.info("Виженер: Длина ключа = " + key.length() + ", Найденный ключ = " + key);
+        return key;
+    }
+
+    /**
+     * Частотный анализ largeText.txt и диаграммы топ-10 букв и биграмм.
+     * Диаграммы рисуются в потоке ChartGenerator, не занимая потоки конвейера.
+     */
+    private static void declareFrequencyAnalysis(Pipeline pipeline, boolean fromSnapshot) {
+        Pipeline.Stage<List<Map.Entry<?, Integer>>> topLetters;
+        Pipeline.Stage<List<Map.Entry<?, Integer>>> topBigrams;
+        if (fromSnapshot) {
+            // Досчитываем только дописанную часть largeText.txt
+            Pipeline.Stage<FrequencySnapshot> snapshot = pipeline.stage("frequencyAnalysis", () -> {
+                LOGGER.info("Обновление снимка частот largeText.txt");
+                return FrequencySnapshot.refresh(FileHandler.outputPath(LARGE_TEXT_SNAPSHOT), FileHandler.inputPath("largeText.txt"), 2);
+            });
+            topLetters = pipeline.stage("topLetters", snapshot, result -> result.getTopNGrams(1, 10));
+            topBigrams = pipeline.stage("topBigrams", snapshot, result -> result.getTopNGrams(2, 10));
+        } else {
+            Pipeline.Stage<EncodedText> largeText = pipeline.stage("readLargeText", () -> {
+                LOGGER.info("Чтение большого текста из largeText.txt для частотного анализа");
+                EncodedText text = FileHandler.readEncoded("largeText.txt");
+                if (text.length() < 100000) {
+                    LOGGER.warning("Текст в largeText.txt короче 100000 символов!");
+                }
+                return text;
+            });
+            Pipeline.Stage<FrequencyAnalyzer> analyzer = pipeline.stage("frequencyAnalysis", largeText,
+                    text -> new FrequencyAnalyzer(text, Runtime.getRuntime().availableProcessors()));
+            topLetters = pipeline.stage("topLetters", analyzer, result -> result.getTopLetters(10));
+            topBigrams = pipeline.stage("topBigrams", analyzer, result -> result.getTopBigrams(10));
+        }
+        pipeline.stageAsync("chartTopLetters", topLetters,
+                data -> ChartGenerator.generateChartAsync("Топ-10 букв", data, "topLetters.png"));
+        pipeline.stageAsync("chartTopBigrams", topBigrams,
+                data -> ChartGenerator.generateChartAsync("Топ-10 биграмм", data, "topBigrams.png"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,346 @@
+package org.example;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Счетчик n-грамм (n = 1..4) над алфавитом CipherUtils.ALPHABET.
+ * n-грамма упаковывается в int как число в системе счисления с основанием 33:
+ * ключ = i1*33^(n-1) + ... + in, где ik - индексы букв. Для n <= 3 счетчики
+ * хранятся в плоском массиве int[33^n], для n = 4 - в IntCountMap.
+ * Подсчет идет скользящим окном и не создает объектов на каждый символ.
+ *
+ * n-граммой считаются n подряд идущих букв алфавита; любой другой символ
+ * прерывает окно. Счетчик помнит незавершенное окно между вызовами add(),
+ * поэтому текст можно подавать частями.
+ */
+public final class NGramCounter {
+    /** Максимальная поддерживаемая длина n-граммы */
+    public static final int MAX_N = 4;
+    /** Наибольшее n, для которого используется плоский массив */
+    private static final int MAX_FLAT_N = 3;
+
+    private final int n;
+    /** 33^(n-1): остаток от деления на него отбрасывает самую старую букву окна */
+    private final int modulus;
+    private final int[] flat;
+    private final IntCountMap map;
+    private long total;
+
+    /** Ключ последних букв окна */
+    private int window;
+    /** Количество подряд идущих букв в окне (не больше n) */
+    private int run;
+
+    /**
+     * @param n - длина n-граммы, от 1 до MAX_N
+     */
+    public NGramCounter(int n) {
+        if (n < 1 || n > MAX_N) {
+            throw new IllegalArgumentException("Длина n-граммы должна быть от 1 до " + MAX_N + ": " + n);
+        }
+        this.n = n;
+        this.modulus = pow(CipherKernel.SIZE, n - 1);
+        if (n <= MAX_FLAT_N) {
+            this.flat = new int[modulus * CipherKernel.SIZE];
+            this.map = null;
+        } else {
+            this.flat = null;
+            this.map = new IntCountMap(1 << 16);
+        }
+    }
+
+    private static int pow(int base, int exp) {
+        int result = 1;
+        for (int i = 0; i < exp; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /** @return int - длина n-граммы */
+    public int n() {
+        return n;
+    }
+
+    /**
+     * Подсчитывает n-граммы в тексте, продолжая незавершенное окно прошлого вызова.
+     *
+     * @param text - текст
+     */
+    public void add(CharSequence text) {
+        add(text, 0, text.length());
+    }
+
+    /**
+     * Подсчитывает n-граммы во фрагменте текста, продолжая незавершенное окно.
+     *
+     * @param text - текст
+     * @param from - начало фрагмента (включительно)
+     * @param to - конец фрагмента (не включительно)
+     */
+    public void add(CharSequence text, int from, int to) {
+        if (text instanceof EncodedText) {
+            // Индексы уже посчитаны при кодировании
+            byte[] indices = ((EncodedText) text).indexArray();
+            for (int i = from; i < to; i++) {
+                addIndex(indices[i]);
+            }
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            addIndex(CipherKernel.indexOf(text.charAt(i)));
+        }
+    }
+
+    /**
+     * Подсчитывает n-граммы, которые начинаются в позициях [start, end).
+     * n-граммы, начинающиеся раньше start, не учитываются, а начатые до end
+     * дочитываются за его пределами. Поэтому при разбиении текста на соседние
+     * фрагменты каждая n-грамма на стыке подсчитывается ровно один раз.
+     *
+     * @param text - весь текст
+     * @param start - первая позиция начала n-граммы
+     * @param end - позиция, с которой n-граммы уже не начинаются
+     */
+    public void addRange(CharSequence text, int start, int end) {
+        breakWindow();
+        add(text, start, Math.min(text.length(), end + n - 1));
+        breakWindow();
+    }
+
+    /**
+     * Добавляет в окно одну букву по ее индексу.
+     *
+     * @param index - индекс буквы или -1 для символа вне алфавита (прерывает окно)
+     */
+    public void addIndex(int index) {
+        if (index < 0) {
+            run = 0;
+            return;
+        }
+        window = (window % modulus) * CipherKernel.SIZE + index;
+        if (run < n) {
+            run++;
+        }
+        if (run == n) {
+            if (flat != null) {
+                flat[window]++;
+            } else {
+                map.add(window, 1);
+            }
+            total++;
+        }
+    }
+
+    /** Прерывает окно, как будто встретился символ вне алфавита */
+    public void breakWindow() {
+        run = 0;
+    }
+
+    /** @return int - ключ последних букв незавершенного окна (для сохранения состояния) */
+    int windowKey() {
+        return window;
+    }
+
+    /** @return int - количество подряд идущих букв в окне (для сохранения состояния) */
+    int windowRun() {
+        return run;
+    }
+
+    /**
+     * Восстанавливает счетчики и окно, сохраненные в снимке.
+     *
+     * @param window - ключ последних букв окна
+     * @param run - количество подряд идущих букв в окне
+     * @param total - общее количество n-грамм
+     */
+    void restoreState(int window, int run, long total) {
+        if (run < 0 || run > n) {
+            throw new IllegalArgumentException("Некорректная длина окна: " + run);
+        }
+        this.window = window;
+        this.run = run;
+        this.total = total;
+    }
+
+    /**
+     * Увеличивает счетчик n-граммы без изменения окна и общего количества.
+     *
+     * @param key - упакованная n-грамма
+     * @param delta - приращение
+     */
+    void addCount(int key, int delta) {
+        if (flat != null) {
+            flat[key] += delta;
+        } else {
+            map.add(key, delta);
+        }
+    }
+
+    /** @return int - наибольший допустимый ключ плюс один, 33^n */
+    int keySpace() {
+        return modulus * CipherKernel.SIZE;
+    }
+
+    /**
+     * @param key - упакованная n-грамма
+     * @return int - количество появлений
+     */
+    public int count(int key) {
+        return flat != null ? flat[key] : map.get(key);
+    }
+
+    /** @return long - общее количество подсчитанных n-грамм */
+    public long total() {
+        return total;
+    }
+
+    /** @return int - количество различных n-грамм с ненулевыми счетчиками */
+    public int distinct() {
+        if (flat == null) {
+            return map.size();
+        }
+        int distinct = 0;
+        for (int count : flat) {
+            if (count != 0) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Перебирает n-граммы с ненулевыми счетчиками.
+     *
+     * @param consumer - обработчик пар (ключ, счетчик)
+     */
+    public void forEach(IntCountMap.EntryConsumer consumer) {
+        if (flat != null) {
+            for (int key = 0; key < flat.length; key++) {
+                if (flat[key] != 0) {
+                    consumer.accept(key, flat[key]);
+                }
+            }
+        } else {
+            map.forEach(consumer);
+        }
+    }
+
+    /**
+     * Прибавляет счетчики другого счетчика той же длины n.
+     * Состояние окна не переносится.
+     *
+     * @param other - другой счетчик
+     */
+    public void merge(NGramCounter other) {
+        if (other.n != n) {
+            throw new IllegalArgumentException("Нельзя объединить счетчики " + n + "-грамм и " + other.n + "-грамм");
+        }
+        if (flat != null) {
+            for (int key = 0; key < flat.length; key++) {
+                flat[key] += other.flat[key];
+            }
+        } else {
+            other.map.forEach(map::add);
+        }
+        total += other.total;
+    }
+
+    /**
+     * Возвращает k самых частых n-грамм по убыванию частоты.
+     * При равной частоте n-граммы упорядочены по алфавиту, поэтому результат
+     * не зависит от порядка подсчета.
+     *
+     * Отбор идет через min-кучу из k элементов: память O(k) и время O(m log k)
+     * для m различных n-грамм вместо сортировки всех счетчиков.
+     *
+     * @param k - количество элементов
+     * @return List<Map.Entry<String, Integer>> - n-граммы с частотами
+     */
+    public List<Map.Entry<String, Integer>> top(int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        // Ключ и счетчик упакованы в long: счетчик в старших битах, инвертированный ключ в младших,
+        // поэтому большее значение означает большую частоту, а при равенстве - меньший ключ
+        // Куча не бывает больше числа различных n-грамм, даже если k огромно
+        int limit = Math.min(k, distinct());
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Long> heap = new PriorityQueue<>(limit + 1);
+        forEach((key, count) -> {
+            long packed = ((long) count << 32) | (~key & 0xFFFFFFFFL);
+            if (heap.size() < limit) {
+                heap.add(packed);
+            } else if (packed > heap.peek()) {
+                heap.poll();
+                heap.add(packed);
+            }
+        });
+        List<Map.Entry<String, Integer>> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            long packed = heap.poll();
+            result.add(new AbstractMap.SimpleImmutableEntry<>(decode(~(int) packed, n), (int) (packed >>> 32)));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Упаковывает n-грамму в ключ.
+     *
+     * @param gram - строка из букв алфавита
+     * @return int - ключ
+     * @throws IllegalArgumentException если строка содержит символ вне алфавита
+     */
+    public static int encode(CharSequence gram) {
+        int key = 0;
+        for (int i = 0; i < gram.length(); i++) {
+            int index = CipherKernel.indexOf(gram.charAt(i));
+            if (index < 0) {
+                throw new IllegalArgumentException("Символ вне алфавита: " + gram.charAt(i));
+            }
+            key = key * CipherKernel.SIZE + index;
+        }
+        return key;
+    }
+
+    /**
+     * Распаковывает ключ long обратно в строку (для n-грамм длиннее MAX_N,
+     * например из FrequencyAnalyzer.approximateNGrams).
+     *
+     * @param key - ключ
+     * @param n - длина n-граммы
+     * @return String - n-грамма
+     */
+    public static String decode(long key, int n) {
+        char[] chars = new char[n];
+        for (int i = n - 1; i >= 0; i--) {
+            chars[i] = CipherKernel.charAt((int) (key % CipherKernel.SIZE));
+            key /= CipherKernel.SIZE;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Распаковывает ключ обратно в строку.
+     *
+     * @param key - ключ
+     * @param n - длина n-граммы
+     * @return String - n-грамма
+     */
+    public static String decode(int key, int n) {
+        char[] chars = new char[n];
+        for (int i = n - 1; i >= 0; i--) {
+            chars[i] = CipherKernel.charAt(key % CipherKernel.SIZE);
+            key /= CipherKernel.SIZE;
+        }
+        return new String(chars);
+    }
+}
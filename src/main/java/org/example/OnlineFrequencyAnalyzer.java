@@ -0,0 +1,385 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Частотный анализ неограниченного потока символов в скользящем окне.
+ *
+ * В отличие от FrequencyAnalyzer, текст не нужен целиком: символы добавляются
+ * по мере поступления (стандартный ввод, дописываемый файл), а счетчики
+ * относятся к последним window символам. Окно хранится кольцевым буфером
+ * индексов алфавита; при добавлении символа вытесняется самый старый, поэтому
+ * счетчики букв и биграмм и сумма n(n-1) для индекса совпадений обновляются за
+ * O(1) на символ.
+ *
+ * Для оценки длины ключа Виженера дополнительно ведутся гистограммы столбцов
+ * для длин 1..maxKeyLength (позиция в ключе, как и в CipherKernel.vigenere,
+ * сдвигается на каждом символе): O(maxKeyLength) на символ, но тоже без
+ * повторного прохода по окну. Сдвиг Цезаря, индекс совпадений, оценка Фридмана
+ * и длина ключа по столбцам (estimate()) считаются только по счетчикам.
+ *
+ * Как и FileHandler.readFile, символы переводятся в верхний регистр, а переводы
+ * строк пропускаются. Методы синхронизированы: поток чтения добавляет символы,
+ * другой поток может в это время запрашивать оценки.
+ */
+public final class OnlineFrequencyAnalyzer {
+    private static final Logger LOGGER = Logger.getLogger(OnlineFrequencyAnalyzer.class.getName());
+    /** Размер окна по умолчанию, символов */
+    public static final int DEFAULT_WINDOW = 1 << 16;
+    /** Наибольшая длина ключа, для которой ведутся гистограммы столбцов, по умолчанию */
+    public static final int DEFAULT_MAX_KEY_LENGTH = 20;
+    /** Минимальное среднее количество букв в столбце, при котором длина ключа проверяется */
+    private static final int MIN_COLUMN_LETTERS = 20;
+    /** Какую долю превышения над случайным текстом должен сохранить делитель лучшей длины */
+    private static final double DIVISOR_TOLERANCE = 0.75;
+    private static final int READ_BUFFER = 1 << 13;
+
+    private final byte[] window;
+    private final int maxKeyLength;
+    /** Позиция самого старого символа в window */
+    private int head;
+    private int size;
+    /** Всего добавлено символов с начала потока */
+    private long total;
+    private byte previous = EncodedText.OTHER;
+
+    private final int[] letters = new int[CipherKernel.SIZE];
+    private final int[] bigrams = new int[CipherKernel.SIZE * CipherKernel.SIZE];
+    private int letterTotal;
+    /** Сумма n(n-1) по буквам окна */
+    private long coincidences;
+
+    /** Столбцы всех длин подряд: для длины L столбец c имеет номер columnStart[L] + c */
+    private final int[] columnStart;
+    /** Гистограммы столбцов, по SIZE счетчиков на столбец */
+    private final int[] columnCounts;
+    private final int[] columnTotals;
+    private final long[] columnCoincidences;
+    /** Столбец для следующего добавляемого и для самого старого символа по каждой длине */
+    private final int[] insertColumn;
+    private final int[] evictColumn;
+
+    /**
+     * Оценки по текущему окну.
+     */
+    public static final class Estimate {
+        private final long total;
+        private final int letters;
+        private final double ioc;
+        private final int caesarShift;
+        private final double friedman;
+        private final int keyLength;
+
+        Estimate(long total, int letters, double ioc, int caesarShift, double friedman, int keyLength) {
+            this.total = total;
+            this.letters = letters;
+            this.ioc = ioc;
+            this.caesarShift = caesarShift;
+            this.friedman = friedman;
+            this.keyLength = keyLength;
+        }
+
+        /** @return long - всего символов с начала потока */
+        public long getTotal() {
+            return total;
+        }
+
+        /** @return int - букв алфавита в окне */
+        public int getLetters() {
+            return letters;
+        }
+
+        /** @return double - индекс совпадений букв окна */
+        public double getIndexOfCoincidence() {
+            return ioc;
+        }
+
+        /** @return int - сдвиг Цезаря по частотам букв окна */
+        public int getCaesarShift() {
+            return caesarShift;
+        }
+
+        /** @return double - оценка длины ключа по формуле Фридмана */
+        public double getFriedmanEstimate() {
+            return friedman;
+        }
+
+        /** @return int - длина ключа по индексу совпадений столбцов (0, если не найдена) */
+        public int getKeyLength() {
+            return keyLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "символов %d, букв в окне %d, индекс совпадений %.4f, сдвиг Цезаря %d, Фридман %.1f, длина ключа %s",
+                    total, letters, ioc, caesarShift, friedman, keyLength > 0 ? String.valueOf(keyLength) : "?");
+        }
+    }
+
+    public OnlineFrequencyAnalyzer() {
+        this(DEFAULT_WINDOW, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+    /**
+     * @param window - размер окна, символов
+     * @param maxKeyLength - наибольшая длина ключа для гистограмм столбцов (0 - не вести)
+     */
+    public OnlineFrequencyAnalyzer(int window, int maxKeyLength) {
+        if (window < 2) {
+            throw new IllegalArgumentException("Окно должно содержать хотя бы 2 символа: " + window);
+        }
+        if (maxKeyLength < 0) {
+            throw new IllegalArgumentException("Длина ключа не может быть отрицательной: " + maxKeyLength);
+        }
+        this.window = new byte[window];
+        this.maxKeyLength = maxKeyLength;
+        columnStart = new int[maxKeyLength + 1];
+        int columns = 0;
+        for (int length = 1; length <= maxKeyLength; length++) {
+            columnStart[length] = columns;
+            columns += length;
+        }
+        columnCounts = new int[columns * CipherKernel.SIZE];
+        columnTotals = new int[columns];
+        columnCoincidences = new long[columns];
+        insertColumn = new int[maxKeyLength + 1];
+        evictColumn = new int[maxKeyLength + 1];
+    }
+
+    /**
+     * Добавляет символ; если окно заполнено, вытесняет самый старый.
+     *
+     * @param c - символ потока
+     */
+    public synchronized void append(char c) {
+        if (c == '\n' || c == '\r') {
+            return;
+        }
+        byte index = (byte) CipherKernel.indexOf(Character.toUpperCase(c));
+        if (size == window.length) {
+            evict();
+        }
+        int tail = head + size;
+        window[tail < window.length ? tail : tail - window.length] = index;
+        size++;
+        if (index >= 0) {
+            int count = letters[index]++;
+            coincidences += 2L * count;
+            letterTotal++;
+            if (previous >= 0) {
+                bigrams[previous * CipherKernel.SIZE + index]++;
+            }
+            for (int length = 1; length <= maxKeyLength; length++) {
+                int column = columnStart[length] + insertColumn[length];
+                int columnCount = columnCounts[column * CipherKernel.SIZE + index]++;
+                columnCoincidences[column] += 2L * columnCount;
+                columnTotals[column]++;
+            }
+        }
+        advance(insertColumn);
+        previous = index;
+        total++;
+    }
+
+    /**
+     * Добавляет фрагмент символов.
+     */
+    public synchronized void append(char[] chars, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            append(chars[i]);
+        }
+    }
+
+    // Удаляет самый старый символ окна вместе с биграммой, которую он начинает
+    private void evict() {
+        byte index = window[head];
+        int next = head + 1 == window.length ? 0 : head + 1;
+        if (index >= 0) {
+            int count = --letters[index];
+            coincidences -= 2L * count;
+            letterTotal--;
+            byte following = window[next];
+            if (size > 1 && following >= 0) {
+                bigrams[index * CipherKernel.SIZE + following]--;
+            }
+            for (int length = 1; length <= maxKeyLength; length++) {
+                int column = columnStart[length] + evictColumn[length];
+                int columnCount = --columnCounts[column * CipherKernel.SIZE + index];
+                columnCoincidences[column] -= 2L * columnCount;
+                columnTotals[column]--;
+            }
+        }
+        advance(evictColumn);
+        head = next;
+        size--;
+    }
+
+    private void advance(int[] columns) {
+        for (int length = 1; length <= maxKeyLength; length++) {
+            if (++columns[length] == length) {
+                columns[length] = 0;
+            }
+        }
+    }
+
+    /** @return int - символов в окне */
+    public synchronized int size() {
+        return size;
+    }
+
+    /** @return long - всего символов с начала потока */
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * @param index - индекс буквы в алфавите
+     * @return int - количество буквы в окне
+     */
+    public synchronized int letterCount(int index) {
+        return letters[index];
+    }
+
+    /**
+     * @param first - индекс первой буквы
+     * @param second - индекс второй буквы
+     * @return int - количество биграммы в окне
+     */
+    public synchronized int bigramCount(int first, int second) {
+        return bigrams[first * CipherKernel.SIZE + second];
+    }
+
+    /** @return int[] - копия гистограммы букв окна */
+    public synchronized int[] letterCounts() {
+        return letters.clone();
+    }
+
+    /** @return double - индекс совпадений букв окна */
+    public synchronized double indexOfCoincidence() {
+        return letterTotal < 2 ? 0 : coincidences / ((double) letterTotal * (letterTotal - 1));
+    }
+
+    /**
+     * Длина ключа по столбцам, по тому же правилу, что KeyLengthDetector.detect:
+     * берется длина с наибольшим средним индексом совпадений столбцов, затем ее
+     * наименьший делитель, сохранивший не меньше DIVISOR_TOLERANCE превышения
+     * над случайным текстом (кратные истинной длины не хуже нее самой).
+     *
+     * @return int - длина ключа или 0, если столбцы не похожи на русский текст,
+     * окно слишком мало или длина больше maxKeyLength
+     */
+    public synchronized int estimateKeyLength() {
+        double[] columnIoc = new double[maxKeyLength + 1];
+        int best = 0;
+        for (int length = 1; length <= maxKeyLength; length++) {
+            if (letterTotal < (long) MIN_COLUMN_LETTERS * length) {
+                break;
+            }
+            int first = columnStart[length];
+            double sum = 0;
+            for (int column = first; column < first + length; column++) {
+                long n = columnTotals[column];
+                sum += n < 2 ? 0 : columnCoincidences[column] / ((double) n * (n - 1));
+            }
+            columnIoc[length] = sum / length;
+            if (best == 0 || columnIoc[length] > columnIoc[best]) {
+                best = length;
+            }
+        }
+        if (best == 0 || columnIoc[best] < (KeyLengthDetector.RUSSIAN_IOC + KeyLengthDetector.RANDOM_IOC) / 2) {
+            return 0;
+        }
+        double required = DIVISOR_TOLERANCE * (columnIoc[best] - KeyLengthDetector.RANDOM_IOC);
+        for (int d = 1; d < best; d++) {
+            if (best % d == 0 && columnIoc[d] - KeyLengthDetector.RANDOM_IOC >= required) {
+                return d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Все оценки по текущему окну.
+     *
+     * @return Estimate - снимок оценок
+     */
+    public synchronized Estimate estimate() {
+        double ioc = indexOfCoincidence();
+        return new Estimate(total, letterTotal, ioc, CaesarCipherAnalyzer.findCaesarShift(letters),
+                KeyLengthDetector.friedmanEstimate(ioc), estimateKeyLength());
+    }
+
+    /**
+     * Читает символы до конца потока (например, стандартного ввода).
+     *
+     * @param reader - источник символов
+     */
+    public void consume(Reader reader) {
+        char[] buffer = new char[READ_BUFFER];
+        try {
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения потока", e);
+        }
+    }
+
+    /**
+     * Следит за дописываемым файлом, как tail -f: читает его с начала, затем
+     * каждые pollMillis миллисекунд дочитывает новые байты. Неполная
+     * последовательность UTF-8 в конце файла ждет следующих байтов. Если файл
+     * стал короче (перезаписан), чтение начинается сначала. Работает, пока
+     * поток не прерван.
+     *
+     * @param file - файл
+     * @param pollMillis - период проверки файла, мс
+     */
+    public void follow(Path file, long pollMillis) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER);
+        CharBuffer chars = CharBuffer.allocate(READ_BUFFER);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                if (channel.size() < position) {
+                    LOGGER.info("Файл стал короче, чтение начинается сначала: " + file);
+                    position = 0;
+                    bytes.clear();
+                    decoder.reset();
+                }
+                int read = channel.read(bytes, position);
+                if (read <= 0) {
+                    Thread.sleep(pollMillis);
+                    continue;
+                }
+                position += read;
+                bytes.flip();
+                decoder.decode(bytes, chars, false);
+                bytes.compact(); // Неполный символ остается до следующего чтения
+                chars.flip();
+                append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+                chars.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,331 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Конвейер этапов с явными зависимостями (ациклический граф).
+ *
+ * Этап объявляет свои входы - другие этапы - и запускается, как только все
+ * они завершились, в общем пуле потоков. Поэтому независимые ветви (например,
+ * Цезарь, Виженер и частотный анализ большого текста) выполняются параллельно,
+ * а запись файлов, объявленная отдельными этапами, идет одновременно с
+ * дальнейшими вычислениями. Граф строится до вызова run(), сами этапы
+ * стартуют только в run().
+ *
+ * Если этап завершился с ошибкой, зависящие от него этапы не выполняются
+ * (считаются отмененными), а остальные ветви доводятся до конца. После этого
+ * run() бросает исключение с первой ошибкой.
+ *
+ * Каждый этап замеряется через PipelineMetrics; объем данных этапа берется
+ * из длины результата, если это текст или файл, иначе из первого входа.
+ */
+public final class Pipeline {
+    private static final Logger LOGGER = Logger.getLogger(Pipeline.class.getName());
+
+    /** Состояние этапа после run() */
+    public enum Status {
+        DONE,
+        FAILED,
+        /** Не выполнялся, потому что не завершился один из входов */
+        CANCELLED
+    }
+
+    private final PipelineMetrics metrics;
+    private final int threads;
+    private final CompletableFuture<Void> start = new CompletableFuture<>();
+    private final List<Stage<?>> stages = new ArrayList<>();
+    private ExecutorService executor;
+
+    /** Функция трех аргументов для этапов с тремя входами */
+    public interface Function3<A, B, C, T> {
+        T apply(A a, B b, C c);
+    }
+
+    /**
+     * Этап конвейера: ссылка на будущий результат, которую можно передавать
+     * как вход другим этапам.
+     */
+    public static final class Stage<T> {
+        private final String name;
+        /** Назначается один раз при объявлении этапа, до запуска конвейера */
+        private CompletableFuture<T> future;
+        /** Упало тело самого этапа, а не один из входов */
+        private volatile boolean failed;
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** @return Status - состояние этапа (имеет смысл после run()) */
+        public Status getStatus() {
+            if (!future.isCompletedExceptionally()) {
+                return Status.DONE;
+            }
+            return failed ? Status.FAILED : Status.CANCELLED;
+        }
+
+        /**
+         * @return T - результат завершенного этапа
+         * @throws IllegalStateException если этап не завершился успешно
+         */
+        public T get() {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                throw new IllegalStateException("Этап не завершен: " + name);
+            }
+            return future.join();
+        }
+    }
+
+    /**
+     * @param threads - количество потоков пула этапов
+     * @param metrics - замеры этапов (PipelineMetrics.disabled(), если не нужны)
+     */
+    public Pipeline(int threads, PipelineMetrics metrics) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Количество потоков должно быть положительным: " + threads);
+        }
+        this.threads = threads;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Этап без входов.
+     *
+     * @param name - имя этапа
+     * @param body - тело этапа
+     * @return Stage<T> - этап
+     */
+    public <T> Stage<T> stage(String name, Supplier<T> body) {
+        return add(name, self -> start.thenApplyAsync(ignored -> measure(self, body, null), this::execute));
+    }
+
+    /**
+     * Этап с одним входом.
+     *
+     * @param name - имя этапа
+     * @param input - входной этап
+     * @param body - тело этапа
+     * @return Stage<T> - этап
+     */
+    public <A, T> Stage<T> stage(String name, Stage<A> input, Function<A, T> body) {
+        return add(name, self -> input.future.thenApplyAsync(a -> measure(self, () -> body.apply(a), a), this::execute));
+    }
+
+    /**
+     * Этап с двумя входами.
+     *
+     * @param name - имя этапа
+     * @param first - первый вход
+     * @param second - второй вход
+     * @param body - тело этапа
+     * @return Stage<T> - этап
+     */
+    public <A, B, T> Stage<T> stage(String name, Stage<A> first, Stage<B> second, BiFunction<A, B, T> body) {
+        return add(name, self -> first.future.thenCombineAsync(second.future,
+                (a, b) -> measure(self, () -> body.apply(a, b), a), this::execute));
+    }
+
+    /**
+     * Этап с тремя входами.
+     *
+     * @param name - имя этапа
+     * @param first - первый вход
+     * @param second - второй вход
+     * @param third - третий вход
+     * @param body - тело этапа
+     * @return Stage<T> - этап
+     */
+    public <A, B, C, T> Stage<T> stage(String name, Stage<A> first, Stage<B> second, Stage<C> third,
+                                       Function3<A, B, C, T> body) {
+        return add(name, self -> CompletableFuture.allOf(first.future, second.future, third.future)
+                .thenApplyAsync(ignored -> {
+                    A a = first.future.join();
+                    return measure(self, () -> body.apply(a, second.future.join(), third.future.join()), a);
+                }, this::execute));
+    }
+
+    /**
+     * Этап без результата, например запись файла. Выполняется параллельно
+     * с этапами, которые используют тот же вход.
+     *
+     * @param name - имя этапа
+     * @param input - входной этап
+     * @param body - тело этапа
+     * @return Stage<Void> - этап
+     */
+    public <A> Stage<Void> sink(String name, Stage<A> input, Consumer<A> body) {
+        return stage(name, input, a -> {
+            body.accept(a);
+            return null;
+        });
+    }
+
+    /**
+     * Этап, работа которого выполняется вне пула конвейера (например,
+     * ChartGenerator.generateChartAsync): тело только запускает ее и
+     * возвращает future. Этап завершается вместе с этим future.
+     *
+     * @param name - имя этапа
+     * @param input - входной этап
+     * @param body - запуск работы
+     * @return Stage<T> - этап
+     */
+    public <A, T> Stage<T> stageAsync(String name, Stage<A> input, Function<A, CompletableFuture<T>> body) {
+        return add(name, self -> input.future.thenComposeAsync(a -> {
+            long startNanos = System.nanoTime();
+            CompletableFuture<T> work;
+            try {
+                work = body.apply(a);
+            } catch (RuntimeException e) {
+                self.failed = true;
+                throw e;
+            }
+            return work.whenComplete((result, error) -> {
+                if (error != null) {
+                    self.failed = true;
+                } else {
+                    metrics.record(name, System.nanoTime() - startNanos, charsOf(result, a));
+                }
+            });
+        }, this::execute));
+    }
+
+    /**
+     * Запускает все этапы и ждет их завершения.
+     *
+     * @throws RuntimeException с первой ошибкой этапа, если какой-то этап упал
+     */
+    public void run() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            start.complete(null);
+            List<CompletableFuture<?>> futures = new ArrayList<>(stages.size());
+            for (Stage<?> stage : stages) {
+                futures.add(stage.future);
+            }
+            // allOf завершается, только когда завершены все этапы, в том числе упавшие
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .exceptionally(error -> null).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        Throwable firstFailure = null;
+        String failedStage = null;
+        for (Stage<?> stage : stages) {
+            Status status = stage.getStatus();
+            if (status == Status.FAILED) {
+                Throwable cause = unwrap(stage.future);
+                LOGGER.log(Level.SEVERE, "Ошибка этапа " + stage.name, cause);
+                if (firstFailure == null) {
+                    firstFailure = cause;
+                    failedStage = stage.name;
+                }
+            } else if (status == Status.CANCELLED) {
+                LOGGER.warning("Этап " + stage.name + " отменен из-за ошибки входного этапа");
+            }
+        }
+        if (firstFailure != null) {
+            throw new RuntimeException("Ошибка этапа конвейера: " + failedStage, firstFailure);
+        }
+    }
+
+    /** @return List<Stage<?>> - этапы в порядке объявления */
+    public List<Stage<?>> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    /**
+     * Регистрирует этап; wiring строит его future, зная сам этап (чтобы тело могло пометить его упавшим).
+     */
+    private <T> Stage<T> add(String name, Function<Stage<T>, CompletableFuture<T>> wiring) {
+        if (start.isDone()) {
+            throw new IllegalStateException("Конвейер уже запущен, этап " + name + " добавить нельзя");
+        }
+        Stage<T> stage = new Stage<>(name);
+        stage.future = wiring.apply(stage);
+        stages.add(stage);
+        return stage;
+    }
+
+    private void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Выполняет тело этапа с замером. Ошибка тела помечает этап как упавший,
+     * в отличие от ошибки входа, которая до тела не доходит.
+     */
+    private <T> T measure(Stage<T> self, Supplier<T> body, Object input) {
+        try {
+            return metrics.stage(self.name, body, result -> charsOf(result, input));
+        } catch (RuntimeException | Error e) {
+            self.failed = true;
+            throw e;
+        }
+    }
+
+    // Скорость считается по тексту, который этап обрабатывает: keyRecovery читает весь
+    // шифротекст, хотя возвращает ключ из 4 букв. Если вход не текст (файл или этап без входа),
+    // берется текст результата (например, прочитанный образец), затем размер файла
+    private static long charsOf(Object result, Object input) {
+        if (input instanceof CharSequence) {
+            return sizeOf(input);
+        }
+        if (result instanceof CharSequence) {
+            return sizeOf(result);
+        }
+        long chars = sizeOf(input);
+        return chars > 0 ? chars : sizeOf(result);
+    }
+
+    // Длина текста; для файла (потоковые этапы передают пути) - размер в байтах как оценка
+    private static long sizeOf(Object value) {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof Path) {
+            try {
+                return Files.size((Path) value);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static Throwable unwrap(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,248 @@
+package org.example;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+/**
+ * Замеры этапов конвейера: время, скорость в символах в секунду, память,
+ * выделенная потоком этапа, и паузы сборщика мусора за время этапа.
+ * Отчет сохраняется в JSON.
+ *
+ * Выключенный экземпляр (disabled()) просто вызывает тело этапа, поэтому
+ * обертки можно оставлять в коде без заметных накладных расходов.
+ *
+ * Память считается только для потока, вызвавшего stage(): выделения в пулах
+ * потоков (например, при параллельном FrequencyAnalyzer) в нее не попадают.
+ * Паузы GC общие для всей JVM и при параллельных этапах пересекаются.
+ */
+public final class PipelineMetrics {
+    private static final Logger LOGGER = Logger.getLogger(PipelineMetrics.class.getName());
+    private static final PipelineMetrics DISABLED = new PipelineMetrics(false);
+
+    private final boolean enabled;
+    private final long startNanos = System.nanoTime();
+    private final Instant startedAt = Instant.now();
+    private final List<Stage> stages = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Замер одного этапа.
+     */
+    public static final class Stage {
+        private final String name;
+        private final String thread;
+        private final long wallNanos;
+        private final long chars;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        Stage(String name, String thread, long wallNanos, long chars, long allocatedBytes, long gcCount, long gcMillis) {
+            this.name = name;
+            this.thread = thread;
+            this.wallNanos = wallNanos;
+            this.chars = chars;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getChars() {
+            return chars;
+        }
+
+        /** @return long - выделено памяти потоком этапа, байт (-1, если JVM не умеет считать) */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /** @return double - символов в секунду (0, если размер этапа неизвестен) */
+        public double getCharsPerSecond() {
+            return wallNanos > 0 ? chars * 1e9 / wallNanos : 0;
+        }
+
+        String toJson() {
+            return "{\"name\":" + Json.quote(name)
+                    + ",\"thread\":" + Json.quote(thread)
+                    + ",\"wallMillis\":" + String.format(Locale.ROOT, "%.3f", wallNanos / 1e6)
+                    + ",\"chars\":" + chars
+                    + ",\"charsPerSecond\":" + Math.round(getCharsPerSecond())
+                    + ",\"allocatedBytes\":" + allocatedBytes
+                    + ",\"gcCount\":" + gcCount
+                    + ",\"gcMillis\":" + gcMillis + "}";
+        }
+    }
+
+    private PipelineMetrics(boolean enabled) {
+        this.enabled = enabled;
+        ThreadMXBean bean = enabled ? ManagementFactory.getThreadMXBean() : null;
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            this.threads = (com.sun.management.ThreadMXBean) bean;
+            this.threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            this.threads = null;
+        }
+    }
+
+    /** @return PipelineMetrics - новый экземпляр, записывающий замеры */
+    public static PipelineMetrics enabled() {
+        return new PipelineMetrics(true);
+    }
+
+    /** @return PipelineMetrics - экземпляр, который ничего не замеряет */
+    public static PipelineMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Выполняет этап с известным заранее объемом данных.
+     *
+     * @param name - имя этапа
+     * @param chars - объем обрабатываемого текста, символов
+     * @param body - тело этапа
+     * @return T - результат тела
+     */
+    public <T> T stage(String name, long chars, Supplier<T> body) {
+        return stage(name, body, result -> chars);
+    }
+
+    /**
+     * Выполняет этап без результата.
+     *
+     * @param name - имя этапа
+     * @param chars - объем обрабатываемого текста, символов
+     * @param body - тело этапа
+     */
+    public void stage(String name, long chars, Runnable body) {
+        stage(name, chars, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет этап, объем данных которого становится известен по результату
+     * (например, чтение файла).
+     *
+     * @param name - имя этапа
+     * @param body - тело этапа
+     * @param charsOf - объем текста по результату
+     * @return T - результат тела
+     */
+    public <T> T stage(String name, Supplier<T> body, ToLongFunction<T> charsOf) {
+        if (!enabled) {
+            return body.get();
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads != null ? threads.getThreadAllocatedBytes(threadId) : -1;
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long start = System.nanoTime();
+        T result = body.get();
+        long wall = System.nanoTime() - start;
+        long allocated = threads != null ? threads.getThreadAllocatedBytes(threadId) - allocatedBefore : -1;
+        Stage stage = new Stage(name, Thread.currentThread().getName(), wall, charsOf.applyAsLong(result), allocated,
+                gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+        synchronized (stages) {
+            stages.add(stage);
+        }
+        LOGGER.info(String.format("Этап %s: %.1f мс, %.0f символов/с", name, wall / 1e6, stage.getCharsPerSecond()));
+        return result;
+    }
+
+    /**
+     * Записывает замер этапа, работа которого шла в других потоках (например,
+     * отрисовка диаграммы в ChartGenerator.generateChartAsync). Память и паузы GC
+     * для такого этапа не считаются.
+     *
+     * @param name - имя этапа
+     * @param wallNanos - время от запуска до завершения, нс
+     * @param chars - объем обработанного текста, символов
+     */
+    public void record(String name, long wallNanos, long chars) {
+        if (!enabled) {
+            return;
+        }
+        Stage stage = new Stage(name, Thread.currentThread().getName(), wallNanos, chars, -1, 0, 0);
+        synchronized (stages) {
+            stages.add(stage);
+        }
+        LOGGER.info(String.format("Этап %s: %.1f мс, %.0f символов/с", name, wallNanos / 1e6, stage.getCharsPerSecond()));
+    }
+
+    /** @return List<Stage> - копия списка замеров в порядке завершения этапов */
+    public List<Stage> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages);
+        }
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Сохраняет отчет о запуске в JSON. Для выключенного экземпляра ничего не делает.
+     *
+     * @param file - файл отчета
+     */
+    public void writeReport(Path file) {
+        if (!enabled) {
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\"startedAt\":").append(Json.quote(startedAt.toString()))
+                .append(",\"totalMillis\":").append((System.nanoTime() - startNanos) / 1_000_000)
+                .append(",\"gcCount\":").append(gcCount())
+                .append(",\"gcMillis\":").append(gcMillis())
+                .append(",\"stages\":[");
+        List<Stage> snapshot = getStages();
+        for (int i = 0; i < snapshot.size(); i++) {
+            json.append(i == 0 ? "\n  " : ",\n  ").append(snapshot.get(i).toJson());
+        }
+        json.append("\n]}\n");
+        try {
+            Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи отчета: " + file, e);
+        }
+        LOGGER.info("Отчет о запуске сохранен: " + file);
+    }
+}
@@ -0,0 +1,188 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Таблица log10-вероятностей квадграмм для оценки правдоподобия открытого текста.
+ *
+ * Таблица на все 33^4 квадграммы (около 4,7 МБ float) строится один раз по
+ * корпусу и сохраняется в файл, который затем отображается в память только
+ * для чтения. Данные остаются вне кучи, а загрузка не читает файл целиком:
+ * страницы подгружаются операционной системой по мере обращения.
+ *
+ * Квадграммы, которых нет в корпусе, получают штрафную оценку
+ * log10(0.01 / N), где N - количество квадграмм корпуса.
+ *
+ * Формат файла (little-endian): магическое число, версия, N (long),
+ * затем 33^4 значений float по возрастанию ключа NGramCounter.
+ */
+public final class QuadgramTable {
+    private static final Logger LOGGER = Logger.getLogger(QuadgramTable.class.getName());
+
+    private static final int MAGIC = 0x4D524751; // "QGRM"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    /** Количество квадграмм: 33^4 */
+    public static final int SIZE = CipherKernel.SIZE * CipherKernel.SIZE * CipherKernel.SIZE * CipherKernel.SIZE;
+    private static final int WRITE_CHUNK_FLOATS = 1 << 16;
+
+    private final FloatBuffer scores;
+    private final long corpusTotal;
+
+    private QuadgramTable(FloatBuffer scores, long corpusTotal) {
+        this.scores = scores;
+        this.corpusTotal = corpusTotal;
+    }
+
+    /**
+     * Строит таблицу по корпусу и сохраняет ее в файл.
+     *
+     * @param corpus - текстовый файл корпуса
+     * @param tableFile - файл таблицы (перезаписывается)
+     */
+    public static void build(Path corpus, Path tableFile) {
+        NGramCounter counter = FrequencySnapshot.analyze(corpus, 4).getCounter(4);
+        long total = counter.total();
+        if (total == 0) {
+            throw new IllegalArgumentException("В корпусе нет ни одной квадграммы: " + corpus);
+        }
+        float floor = (float) Math.log10(0.01 / total);
+        Path temp = tableFile.resolveSibling(tableFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(tableFile.toAbsolutePath().getParent());
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_CHUNK_FLOATS * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(total);
+                for (int key = 0; key < SIZE; key++) {
+                    int count = counter.count(key);
+                    buffer.putFloat(count > 0 ? (float) Math.log10((double) count / total) : floor);
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer, out);
+                    }
+                }
+                flush(buffer, out);
+            }
+            // Читатели никогда не увидят наполовину записанную таблицу
+            Files.move(temp, tableFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи таблицы квадграмм: " + tableFile, e);
+        }
+        LOGGER.info("Таблица квадграмм построена по " + total + " квадграммам: " + tableFile);
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Отображает сохраненную таблицу в память.
+     *
+     * @param tableFile - файл таблицы
+     * @return QuadgramTable - таблица
+     */
+    public static QuadgramTable load(Path tableFile) {
+        try (FileChannel in = FileChannel.open(tableFile, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + (long) SIZE * Float.BYTES;
+            if (in.size() != expected) {
+                throw new IllegalArgumentException("Неверный размер таблицы квадграмм: " + tableFile);
+            }
+            // Отображение остается действительным после закрытия канала
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Файл не является таблицей квадграмм: " + tableFile);
+            }
+            long total = mapped.getLong(8);
+            mapped.position(HEADER_BYTES);
+            FloatBuffer scores = mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            return new QuadgramTable(scores, total);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения таблицы квадграмм: " + tableFile, e);
+        }
+    }
+
+    /**
+     * Загружает таблицу, предварительно построив ее, если файла нет
+     * или корпус изменился позже таблицы.
+     *
+     * @param corpus - текстовый файл корпуса
+     * @param tableFile - файл таблицы
+     * @return QuadgramTable - таблица
+     */
+    public static QuadgramTable loadOrBuild(Path corpus, Path tableFile) {
+        try {
+            if (!Files.exists(tableFile)
+                    || Files.getLastModifiedTime(tableFile).compareTo(Files.getLastModifiedTime(corpus)) < 0) {
+                build(corpus, tableFile);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + corpus, e);
+        }
+        return load(tableFile);
+    }
+
+    /**
+     * @param key - квадграмма, упакованная как в NGramCounter
+     * @return float - log10 вероятности квадграммы
+     */
+    public float score(int key) {
+        return scores.get(key);
+    }
+
+    /**
+     * @param i1 - индекс первой буквы
+     * @param i2 - индекс второй буквы
+     * @param i3 - индекс третьей буквы
+     * @param i4 - индекс четвертой буквы
+     * @return float - log10 вероятности квадграммы
+     */
+    public float score(int i1, int i2, int i3, int i4) {
+        return scores.get(((i1 * CipherKernel.SIZE + i2) * CipherKernel.SIZE + i3) * CipherKernel.SIZE + i4);
+    }
+
+    /** @return long - количество квадграмм корпуса, по которому построена таблица */
+    public long getCorpusTotal() {
+        return corpusTotal;
+    }
+
+    /**
+     * Оценивает правдоподобие текста: сумма log10-вероятностей всех квадграмм
+     * из четырех подряд идущих букв алфавита.
+     *
+     * @param text - текст
+     * @return double - оценка (чем больше, тем текст ближе к корпусу)
+     */
+    public double score(CharSequence text) {
+        double sum = 0;
+        int window = 0;
+        int run = 0;
+        int modulus = CipherKernel.SIZE * CipherKernel.SIZE * CipherKernel.SIZE;
+        for (int i = 0; i < text.length(); i++) {
+            int index = CipherKernel.indexOf(text.charAt(i));
+            if (index < 0) {
+                run = 0;
+                continue;
+            }
+            window = (window % modulus) * CipherKernel.SIZE + index;
+            if (++run >= 4) {
+                sum += scores.get(window);
+            }
+        }
+        return sum;
+    }
+}
\ No newline at end of file
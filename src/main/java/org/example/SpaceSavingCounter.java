@@ -0,0 +1,295 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Приближенный подсчет самых частых элементов алгоритмом Space-Saving
+ * (Metwally, Agrawal, El Abbadi) в фиксированном объеме памяти.
+ *
+ * Хранится не больше capacity счетчиков. Новый элемент при заполненной таблице
+ * вытесняет элемент с минимальным счетчиком и наследует его значение как
+ * погрешность. Оценка частоты никогда не меньше истинной и превышает ее не
+ * больше чем на total / capacity; любой элемент с частотой выше этой границы
+ * гарантированно присутствует в таблице.
+ *
+ * Элементы задаются ключами long (упакованная n-грамма, хэш слова), поэтому
+ * подсчет не создает объектов. Для ключей, которые нельзя восстановить по
+ * числу, можно передать подпись: строка создается только при попадании
+ * элемента в таблицу.
+ */
+public final class SpaceSavingCounter {
+    private final int capacity;
+
+    // Слоты счетчиков
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final String[] labels;
+    private int size;
+    private long total;
+
+    // Min-куча номеров слотов по значению счетчика и обратный индекс позиций
+    private final int[] heap;
+    private final int[] heapPos;
+
+    // Открытая адресация ключ -> номер слота + 1 (0 - пустая ячейка)
+    private final long[] tableKeys;
+    private final int[] tableSlots;
+    private final int mask;
+
+    /**
+     * Оценка частоты элемента.
+     */
+    public static final class Estimate {
+        private final long key;
+        private final String label;
+        private final long count;
+        private final long error;
+
+        Estimate(long key, String label, long count, long error) {
+            this.key = key;
+            this.label = label;
+            this.count = count;
+            this.error = error;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        /** @return String - подпись элемента или null, если она не передавалась */
+        public String getLabel() {
+            return label;
+        }
+
+        /** @return long - оценка частоты сверху */
+        public long getCount() {
+            return count;
+        }
+
+        /** @return long - наибольшее возможное завышение оценки */
+        public long getError() {
+            return error;
+        }
+
+        /** @return long - гарантированная нижняя граница частоты */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+    }
+
+    /**
+     * @param capacity - количество хранимых счетчиков (определяет память и точность)
+     */
+    public SpaceSavingCounter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Количество счетчиков должно быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.labels = new String[capacity];
+        this.heap = new int[capacity];
+        this.heapPos = new int[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(4, capacity * 2 - 1)) << 1;
+        this.tableKeys = new long[tableSize];
+        this.tableSlots = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * Создает счетчик, погрешность которого не превышает epsilon * total.
+     *
+     * @param epsilon - относительная погрешность, от 0 до 1
+     * @return SpaceSavingCounter - счетчик на ceil(1 / epsilon) элементов
+     */
+    public static SpaceSavingCounter withErrorBound(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1)) {
+            throw new IllegalArgumentException("Погрешность должна быть в интервале (0, 1): " + epsilon);
+        }
+        return new SpaceSavingCounter((int) Math.min(Integer.MAX_VALUE - 8, Math.ceil(1 / epsilon)));
+    }
+
+    /**
+     * Учитывает одно появление элемента.
+     *
+     * @param key - ключ элемента
+     */
+    public void add(long key) {
+        add(key, null);
+    }
+
+    /**
+     * Учитывает одно появление элемента с подписью.
+     *
+     * @param key - ключ элемента
+     * @param label - подпись (копируется, только если элемент попадает в таблицу) или null
+     */
+    public void add(long key, CharSequence label) {
+        total++;
+        int slot = find(key);
+        if (slot >= 0) {
+            counts[slot]++;
+            siftDown(heapPos[slot]);
+            return;
+        }
+        if (size < capacity) {
+            slot = size++;
+            keys[slot] = key;
+            counts[slot] = 1;
+            errors[slot] = 0;
+            labels[slot] = label != null ? label.toString() : null;
+            heap[slot] = slot;
+            heapPos[slot] = slot;
+            insert(key, slot);
+            siftUp(slot);
+            return;
+        }
+        // Вытесняем элемент с минимальным счетчиком: его значение становится погрешностью нового
+        slot = heap[0];
+        remove(keys[slot]);
+        errors[slot] = counts[slot];
+        counts[slot]++;
+        keys[slot] = key;
+        labels[slot] = label != null ? label.toString() : null;
+        insert(key, slot);
+        siftDown(0);
+    }
+
+    /** @return long - общее количество учтенных появлений */
+    public long total() {
+        return total;
+    }
+
+    /** @return int - наибольшее количество хранимых счетчиков */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** @return int - количество занятых счетчиков */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return long - текущая граница погрешности: минимальный счетчик заполненной
+     * таблицы (не больше total / capacity) или 0, пока все элементы помещаются
+     */
+    public long maxError() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * Возвращает k элементов с наибольшими оценками по убыванию оценки.
+     * При равных оценках первым идет элемент с меньшей погрешностью.
+     *
+     * @param k - количество элементов
+     * @return List<Estimate> - оценки частот
+     */
+    public List<Estimate> top(int k) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> counts[a] != counts[b]
+                ? Long.compare(counts[b], counts[a]) : Long.compare(errors[a], errors[b]));
+        List<Estimate> result = new ArrayList<>(Math.min(k, size));
+        for (int i = 0; i < k && i < size; i++) {
+            int slot = order[i];
+            result.add(new Estimate(keys[slot], labels[slot], counts[slot], errors[slot]));
+        }
+        return result;
+    }
+
+    private void siftUp(int pos) {
+        int slot = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            place(heap[parent], pos);
+            pos = parent;
+        }
+        place(slot, pos);
+    }
+
+    private void siftDown(int pos) {
+        int slot = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[slot]) {
+                break;
+            }
+            place(heap[child], pos);
+            pos = child;
+        }
+        place(slot, pos);
+    }
+
+    private void place(int slot, int pos) {
+        heap[pos] = slot;
+        heapPos[slot] = pos;
+    }
+
+    /** Перемешивает биты ключа (финализатор SplitMix64) */
+    private int hash(long key) {
+        long h = key;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (h ^ (h >>> 31)) & mask;
+    }
+
+    private int find(long key) {
+        int i = hash(key);
+        while (tableSlots[i] != 0) {
+            if (tableKeys[i] == key) {
+                return tableSlots[i] - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long key, int slot) {
+        int i = hash(key);
+        while (tableSlots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = key;
+        tableSlots[i] = slot + 1;
+    }
+
+    /** Удаляет ключ со сдвигом следующих ячеек цепочки назад, без надгробий */
+    private void remove(long key) {
+        int i = hash(key);
+        while (tableKeys[i] != key || tableSlots[i] == 0) {
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (tableSlots[j] == 0) {
+                break;
+            }
+            int home = hash(tableKeys[j]);
+            // Ячейку j можно перенести в дыру, если ее исходная позиция не лежит между дырой и j
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                tableKeys[hole] = tableKeys[j];
+                tableSlots[hole] = tableSlots[j];
+                hole = j;
+            }
+        }
+        tableSlots[hole] = 0;
+    }
+}
\ No newline at end of file
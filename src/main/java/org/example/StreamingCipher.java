@@ -0,0 +1,241 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Потоковое шифрование и расшифровка файлов произвольного размера.
+ * Файл читается через FileChannel блоками фиксированного размера, каждый блок
+ * декодируется из UTF-8, переводится в верхний регистр, обрабатывается ядром
+ * CipherKernel на месте и сразу записывается в выходной файл. Расход памяти
+ * не зависит от размера файла.
+ *
+ * В отличие от FileHandler.readFile переводы строк сохраняются. Они не сдвигают
+ * позицию в ключе Виженера, поэтому результат без переводов строк совпадает
+ * с результатом CipherUtils.encryptVigenere для текста из FileHandler.readFile.
+ */
+public final class StreamingCipher {
+    /** Размер буфера по умолчанию (в байтах и символах) */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private StreamingCipher() {
+    }
+
+    /**
+     * Преобразование одного блока символов. Возвращает позицию в ключе
+     * для следующего блока (для шифра Цезаря всегда 0).
+     */
+    private interface ChunkTransform {
+        int apply(char[] chars, int off, int len, int phase);
+    }
+
+    /**
+     * Обработчик блока символов при чтении файла методом scan().
+     */
+    public interface ChunkConsumer {
+        void accept(char[] chars, int off, int len);
+    }
+
+    public static void encryptCaesar(Path input, Path output, int shift) {
+        transform(input, output, caesar(shift));
+    }
+
+    public static void decryptCaesar(Path input, Path output, int shift) {
+        transform(input, output, caesar(-shift));
+    }
+
+    public static void encryptVigenere(Path input, Path output, String key) {
+        transform(input, output, vigenere(CipherKernel.keyShifts(key, false)));
+    }
+
+    public static void decryptVigenere(Path input, Path output, String key) {
+        transform(input, output, vigenere(CipherKernel.keyShifts(key, true)));
+    }
+
+    private static ChunkTransform caesar(int shift) {
+        return (chars, off, len, phase) -> {
+            CipherKernel.caesar(chars, off, len, shift);
+            return 0;
+        };
+    }
+
+    private static ChunkTransform vigenere(int[] shifts) {
+        return (chars, off, len, phase) -> {
+            // Переводы строк пропускаем, чтобы они не сдвигали позицию в ключе
+            int start = off;
+            for (int i = off, end = off + len; i < end; i++) {
+                if (isLineBreak(chars[i])) {
+                    phase = CipherKernel.vigenere(chars, start, i - start, shifts, phase);
+                    start = i + 1;
+                }
+            }
+            return CipherKernel.vigenere(chars, start, off + len - start, shifts, phase);
+        };
+    }
+
+    /**
+     * Читает начало файла так же, как FileHandler.readFile: без переводов строк
+     * и в верхнем регистре, но не более maxChars символов. Используется для
+     * криптоанализа файлов, которые целиком не помещаются в память.
+     *
+     * @param input - путь к файлу
+     * @param maxChars - максимальное количество символов результата
+     * @return String - начало текста
+     */
+    public static String readPrefix(Path input, int maxChars) {
+        StringBuilder text = new StringBuilder();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            CharsetDecoder decoder = newDecoder();
+            ByteBuffer bytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            CharBuffer chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            boolean eof = false;
+            while (!eof && text.length() < maxChars) {
+                eof = in.read(bytes) < 0;
+                bytes.flip();
+                decoder.decode(bytes, chars, eof);
+                bytes.compact();
+                chars.flip();
+                while (chars.hasRemaining() && text.length() < maxChars) {
+                    char c = chars.get();
+                    if (!isLineBreak(c)) {
+                        text.append(Character.toUpperCase(c));
+                    }
+                }
+                chars.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + input, e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Читает файл блоками и передает их обработчику. Символы приводятся к
+     * верхнему регистру, переводы строк удаляются, как в FileHandler.readFile.
+     * Массив блока переиспользуется и действителен только внутри вызова обработчика.
+     *
+     * @param input - путь к файлу
+     * @param consumer - обработчик блоков
+     */
+    public static void scan(Path input, ChunkConsumer consumer) {
+        scan(input, false, consumer);
+    }
+
+    /**
+     * То же, что scan(input, consumer), но переводы строк можно сохранить:
+     * они нужны, когда граница строки разделяет слова.
+     *
+     * @param input - путь к файлу
+     * @param keepLineBreaks - передавать ли обработчику символы '\n' и '\r'
+     * @param consumer - обработчик блоков
+     */
+    public static void scan(Path input, boolean keepLineBreaks, ChunkConsumer consumer) {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            CharsetDecoder decoder = newDecoder();
+            ByteBuffer bytes = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+            CharBuffer chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(bytes) < 0;
+                bytes.flip();
+                decoder.decode(bytes, chars, eof);
+                if (eof) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+                chars.flip();
+                char[] array = chars.array();
+                int len = 0;
+                for (int i = 0; i < chars.limit(); i++) {
+                    char c = array[i];
+                    if (keepLineBreaks || !isLineBreak(c)) {
+                        array[len++] = Character.toUpperCase(c);
+                    }
+                }
+                consumer.accept(array, 0, len);
+                chars.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения файла: " + input, e);
+        }
+    }
+
+    /**
+     * Прогоняет файл через преобразование блоками фиксированного размера.
+     * Позиция в ключе передается от блока к блоку.
+     */
+    private static void transform(Path input, Path output, ChunkTransform transform) {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CharsetDecoder decoder = newDecoder();
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+            ByteBuffer inBytes = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+            // В UTF-8 символ занимает не меньше байта, поэтому блок байтов всегда помещается в буфер символов
+            CharBuffer chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            ByteBuffer outBytes = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+            int phase = 0;
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(inBytes) < 0;
+                inBytes.flip();
+                decoder.decode(inBytes, chars, eof);
+                if (eof) {
+                    decoder.flush(chars);
+                }
+                // Неполная последовательность байтов в конце блока переносится в следующий блок
+                inBytes.compact();
+
+                chars.flip();
+                char[] array = chars.array();
+                int len = chars.remaining();
+                for (int i = 0; i < len; i++) {
+                    array[i] = Character.toUpperCase(array[i]);
+                }
+                phase = transform.apply(array, 0, len, phase);
+
+                encode(encoder, chars, outBytes, out, eof);
+                chars.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка потоковой обработки файла: " + input, e);
+        }
+    }
+
+    private static void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer outBytes,
+                               FileChannel out, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, outBytes, endOfInput);
+            if (endOfInput && result.isUnderflow()) {
+                result = encoder.flush(outBytes);
+            }
+            outBytes.flip();
+            while (outBytes.hasRemaining()) {
+                out.write(outBytes);
+            }
+            outBytes.clear();
+            if (result.isUnderflow()) {
+                return;
+            }
+        }
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+}
@@ -1,64 +1,67 @@
 package org.example;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class VigenereCipherAnalyzer {
     public static int findKeyLength(String cipherText) {
-        Map<Integer, Double> coincidences = new HashMap<>();
-        for (int len = 1; len <= 10; len++) { // Ограничиваем поиск до 10
-            double coincidence = 0;
-            int count = 0;
-            for (int i = 0; i < cipherText.length() - len; i++) {
-                if (cipherText.charAt(i) == cipherText.charAt(i + len)) {
-                    coincidence++;
-                }
-                count++;
-            }
-            if (count > 0) {
-                coincidences.put(len, coincidence / count);
-            }
-        }
-        // Находим длину с максимальным количеством совпадений
-        int bestLength = coincidences.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(4);
+        return findKeyLength(cipherText, KeyLengthDetector.DEFAULT_MAX_LENGTH);
+    }
 
-        // Проверяем кратность (ключ может повторяться)
-        for (int len = 1; len <= bestLength / 2; len++) {
-            if (bestLength % len == 0 && coincidences.getOrDefault(len, 0.0) > 0.03) { // Порог совпадений
-                return len; // Возвращаем минимальную длину ключа
-            }
-        }
-        return bestLength;
+    // Длина ключа по автокорреляции шифротекста для всех лагов сразу (см. KeyLengthDetector)
+    public static int findKeyLength(String cipherText, int maxLength) {
+        return KeyLengthDetector.detect(cipherText, maxLength);
+    }
+
+    public static int findKeyLength(EncodedText cipherText) {
+        return KeyLengthDetector.detect(cipherText, KeyLengthDetector.DEFAULT_MAX_LENGTH);
     }
 
+    // Гистограммы всех столбцов собираются за один проход, сдвиг каждого столбца - по его гистограмме
     public static String findKey(String cipherText, int keyLength) {
-        StringBuilder key = new StringBuilder();
-        for (int i = 0; i < keyLength; i++) {
-            StringBuilder subText = new StringBuilder();
-            for (int j = i; j < cipherText.length(); j += keyLength) {
-                subText.append(cipherText.charAt(j));
+        return keyFromColumns(cipherText, keyLength);
+    }
+
+    public static String findKey(EncodedText cipherText, int keyLength) {
+        return keyFromColumns(cipherText, keyLength);
+    }
+
+    private static String keyFromColumns(CharSequence cipherText, int keyLength) {
+        if (keyLength < 1) {
+            throw new IllegalArgumentException("Длина ключа должна быть положительной: " + keyLength);
+        }
+        int[][] columns = new int[keyLength][CipherKernel.SIZE];
+        byte[] indices = cipherText instanceof EncodedText
+                ? ((EncodedText) cipherText).indexArray() : EncodedText.indicesOf(cipherText, cipherText.length());
+        int column = 0;
+        for (byte index : indices) {
+            if (index >= 0) {
+                columns[column][index]++;
+            }
+            if (++column == keyLength) {
+                column = 0;
             }
-            int shift = CaesarCipherAnalyzer.findCaesarShift(subText.toString());
-            key.append(CipherUtils.indexToChar.get(shift));
+        }
+        StringBuilder key = new StringBuilder(keyLength);
+        for (int[] counts : columns) {
+            key.append(CipherKernel.charAt(CaesarCipherAnalyzer.findCaesarShift(counts)));
         }
         return key.toString();
     }
 
+    // Уточнение ключа восхождением по оценке квадграмм открытого текста (см. VigenereKeyRefiner)
+    public static String refineKey(String cipherText, String key, QuadgramTable table) {
+        return VigenereKeyRefiner.refine(cipherText, key, table);
+    }
+
+    public static String refineKey(EncodedText cipherText, String key, QuadgramTable table) {
+        return VigenereKeyRefiner.refine(cipherText, key, table);
+    }
+
     public static String decrypt(String cipherText, String key) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < cipherText.length(); i++) {
-            char c = cipherText.charAt(i);
-            char k = key.charAt(i % key.length());
-            if (CipherUtils.charToIndex.containsKey(c)) {
-                int index = (CipherUtils.charToIndex.get(c) - CipherUtils.charToIndex.get(k) + CipherUtils.ALPHABET.length()) % CipherUtils.ALPHABET.length();
-                result.append(CipherUtils.indexToChar.get(index));
-            } else {
-                result.append(c);
-            }
-        }
-        return result.toString();
+        char[] chars = cipherText.toCharArray();
+        CipherKernel.vigenere(chars, 0, chars.length, CipherKernel.keyShifts(key, true), 0);
+        return new String(chars);
+    }
+
+    public static EncodedText decrypt(EncodedText cipherText, String key) {
+        return cipherText.vigenere(CipherKernel.keyShifts(key, true));
     }
 }
\ No newline at end of file
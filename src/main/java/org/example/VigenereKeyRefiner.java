@@ -0,0 +1,150 @@
+package org.example;
+
+/**
+ * Уточнение ключа Виженера восхождением по оценке квадграмм (QuadgramTable).
+ *
+ * Начальный ключ (обычно из VigenereCipherAnalyzer.findKey) улучшается
+ * покоординатно: для каждой позиции ключа перебираются все 33 буквы и
+ * остается та, при которой сумма log10-вероятностей квадграмм открытого
+ * текста максимальна. Проходы повторяются, пока ключ меняется.
+ *
+ * Оценка пересчитывается инкрементально. Для каждой позиции ключа заранее
+ * собраны позиции текста, которые она расшифровывает, и квадграммы, которые
+ * их содержат; при смене одной буквы пересчитываются только они, то есть
+ * примерно 1/L текста на кандидата вместо всего текста.
+ */
+public final class VigenereKeyRefiner {
+    /** Сколько символов шифротекста используется для оценки */
+    public static final int MAX_SAMPLE = 1 << 17;
+    /** Предел проходов по ключу (обычно хватает двух-трех) */
+    private static final int MAX_ROUNDS = 20;
+
+    private VigenereKeyRefiner() {
+    }
+
+    /**
+     * Уточняет ключ.
+     *
+     * @param cipherText - шифротекст
+     * @param initialKey - начальный ключ
+     * @param table - таблица квадграмм
+     * @return String - ключ с не меньшей оценкой квадграмм, той же длины
+     */
+    public static String refine(CharSequence cipherText, String initialKey, QuadgramTable table) {
+        int keyLength = initialKey.length();
+        int[] key = CipherKernel.keyShifts(initialKey, false);
+        int length = Math.min(cipherText.length(), MAX_SAMPLE);
+
+        // Индексы шифротекста и текущего открытого текста (-1 для символов вне алфавита).
+        // Позиция в ключе, как и в CipherKernel.vigenere, сдвигается на каждом символе
+        byte[] cipher = EncodedText.indicesOf(cipherText, length);
+        byte[] plain = new byte[length];
+        int[] phaseSize = new int[keyLength];
+        for (int i = 0; i < length; i++) {
+            int index = cipher[i];
+            if (index >= 0) {
+                plain[i] = (byte) decrypt(index, key[i % keyLength]);
+                phaseSize[i % keyLength]++;
+            } else {
+                plain[i] = -1;
+            }
+        }
+
+        // Позиции букв по позициям ключа
+        int[][] positions = new int[keyLength][];
+        for (int j = 0; j < keyLength; j++) {
+            positions[j] = new int[phaseSize[j]];
+            phaseSize[j] = 0;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cipher[i] >= 0) {
+                int phase = i % keyLength;
+                positions[phase][phaseSize[phase]++] = i;
+            }
+        }
+
+        // Начала квадграмм, затронутых каждой позицией ключа (без повторов при L < 4)
+        int[] windowCount = new int[keyLength];
+        forEachWindow(cipher, keyLength, (start, phase) -> windowCount[phase]++);
+        int[][] windows = new int[keyLength][];
+        for (int j = 0; j < keyLength; j++) {
+            windows[j] = new int[windowCount[j]];
+            windowCount[j] = 0;
+        }
+        forEachWindow(cipher, keyLength, (start, phase) -> windows[phase][windowCount[phase]++] = start);
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            for (int j = 0; j < keyLength; j++) {
+                int bestShift = key[j];
+                double bestScore = score(plain, windows[j], table);
+                for (int shift = 0; shift < CipherKernel.SIZE; shift++) {
+                    if (shift == key[j]) {
+                        continue;
+                    }
+                    apply(cipher, plain, positions[j], shift);
+                    double candidate = score(plain, windows[j], table);
+                    if (candidate > bestScore) {
+                        bestScore = candidate;
+                        bestShift = shift;
+                    }
+                }
+                apply(cipher, plain, positions[j], bestShift);
+                if (bestShift != key[j]) {
+                    key[j] = bestShift;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+        }
+
+        char[] result = new char[keyLength];
+        for (int j = 0; j < keyLength; j++) {
+            result[j] = CipherKernel.charAt(key[j]);
+        }
+        return new String(result);
+    }
+
+    private interface WindowConsumer {
+        void accept(int start, int phase);
+    }
+
+    /**
+     * Перебирает квадграммы из четырех подряд идущих букв и различные позиции
+     * ключа, которые расшифровывают их буквы.
+     */
+    private static void forEachWindow(byte[] cipher, int keyLength, WindowConsumer consumer) {
+        int run = 0;
+        for (int i = 0; i < cipher.length; i++) {
+            run = cipher[i] >= 0 ? run + 1 : 0;
+            if (run < 4) {
+                continue;
+            }
+            int start = i - 3;
+            for (int t = 0; t < 4 && t < keyLength; t++) {
+                consumer.accept(start, (start + t) % keyLength);
+            }
+        }
+    }
+
+    private static void apply(byte[] cipher, byte[] plain, int[] positions, int shift) {
+        for (int position : positions) {
+            plain[position] = (byte) decrypt(cipher[position], shift);
+        }
+    }
+
+    private static double score(byte[] plain, int[] windows, QuadgramTable table) {
+        double sum = 0;
+        for (int start : windows) {
+            sum += table.score(plain[start], plain[start + 1], plain[start + 2], plain[start + 3]);
+        }
+        return sum;
+    }
+
+    private static int decrypt(int index, int shift) {
+        int value = index - shift;
+        return value < 0 ? value + CipherKernel.SIZE : value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,801 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Перебор ключей Виженера для коротких ключей, когда статистика столбцов
+ * (VigenereCipherAnalyzer.findKey) не справляется, например на коротком шифротексте.
+ *
+ * Ключ оценивается суммой log10-вероятностей квадграмм (QuadgramTable)
+ * расшифровки начала шифротекста длиной prefixLength. Сохраняются top лучших
+ * ключей. Ключи, которые являются повторением более короткого ключа, не
+ * учитываются: они дают ту же расшифровку, что и короткий ключ.
+ *
+ * Полный перебор идет методом ветвей и границ: буквы ключа назначаются по
+ * порядку, и для каждой частично заданной ветви считается верхняя граница
+ * оценки. Квадграмма, все буквы которой уже расшифрованы, дает точное значение,
+ * частично расшифрованная - максимум таблицы по недостающим буквам, остальные -
+ * максимум всей таблицы. Если граница не лучше худшего из top найденных ключей,
+ * ветвь отбрасывается целиком. Чтобы отсечение работало с самого начала,
+ * в список заранее добавляется статистический ключ каждой длины
+ * (findKey + VigenereKeyRefiner).
+ *
+ * Пространство ключей каждой длины делится на части по первым двум буквам,
+ * части выполняются в ForkJoinPool с перехватом работы. Завершенные части и
+ * текущий список лучших ключей сохраняются в файл контрольной точки, поэтому
+ * прерванный перебор продолжается с того же места. Ход перебора, скорость
+ * в ключах в секунду (включая отсеченные ветви) и оставшееся время выводятся
+ * в лог.
+ */
+public final class VigenereKeySearch {
+    private static final Logger LOGGER = Logger.getLogger(VigenereKeySearch.class.getName());
+    /** Длина начала шифротекста для оценки ключей по умолчанию */
+    public static final int DEFAULT_PREFIX_LENGTH = 240;
+    /** Количество ключей в результате по умолчанию */
+    public static final int DEFAULT_TOP = 10;
+    /** Наибольшая длина ключа для полного перебора: 33^12 еще помещается в long */
+    public static final int MAX_EXHAUSTIVE_LENGTH = 12;
+    /** Количество первых букв ключа, задающих часть перебора */
+    private static final int PARTITION_LETTERS = 2;
+    private static final int PROGRESS_PERIOD_SECONDS = 5;
+    /** Контрольная точка сохраняется не чаще, чем раз в это количество миллисекунд */
+    private static final long CHECKPOINT_PERIOD_MILLIS = 1000;
+    private static final String CHECKPOINT_HEADER = "VKS 1";
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final QuadgramTable table;
+    /** Копия таблицы в куче: перебор обращается к ней миллионы раз в секунду */
+    private final float[] scores = new float[QuadgramTable.SIZE];
+    private final int parallelism;
+    private final int prefixLength;
+
+    // Оценки, ограниченные сверху, для квадграмм с известными первыми или последними буквами
+    private final float[] prefixMax1 = new float[CipherKernel.SIZE];
+    private final float[] prefixMax2 = new float[CipherKernel.SIZE * CipherKernel.SIZE];
+    private final float[] prefixMax3 = new float[CipherKernel.SIZE * CipherKernel.SIZE * CipherKernel.SIZE];
+    private final float[] suffixMax1 = new float[CipherKernel.SIZE];
+    private final float[] suffixMax2 = new float[CipherKernel.SIZE * CipherKernel.SIZE];
+    private final float[] suffixMax3 = new float[CipherKernel.SIZE * CipherKernel.SIZE * CipherKernel.SIZE];
+    private float globalMax = Float.NEGATIVE_INFINITY;
+
+    /**
+     * Ключ-кандидат с оценкой.
+     */
+    public static final class Candidate {
+        private final String key;
+        private final double score;
+
+        Candidate(String key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /** @return double - сумма log10-вероятностей квадграмм расшифровки начала текста */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s (%.2f)", key, score);
+        }
+    }
+
+    /**
+     * Итог перебора.
+     */
+    public static final class Result {
+        private final List<Candidate> candidates;
+        private final long keysCovered;
+        private final long keysScored;
+        private final long elapsedNanos;
+
+        Result(List<Candidate> candidates, long keysCovered, long keysScored, long elapsedNanos) {
+            this.candidates = candidates;
+            this.keysCovered = keysCovered;
+            this.keysScored = keysScored;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** @return List<Candidate> - лучшие ключи, лучший первым */
+        public List<Candidate> getCandidates() {
+            return candidates;
+        }
+
+        /** @return long - количество проверенных в этом запуске ключей, включая отсеченные ветви */
+        public long getKeysCovered() {
+            return keysCovered;
+        }
+
+        /** @return long - количество ключей, для которых посчитана полная оценка */
+        public long getKeysScored() {
+            return keysScored;
+        }
+
+        public double getSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        /** @return double - проверенных ключей в секунду */
+        public double getKeysPerSecond() {
+            return elapsedNanos > 0 ? keysCovered * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("проверено ключей %d (полностью оценено %d) за %.2f с, %.0f ключей/с, лучший: %s",
+                    keysCovered, keysScored, getSeconds(), getKeysPerSecond(),
+                    candidates.isEmpty() ? "-" : candidates.get(0));
+        }
+    }
+
+    /**
+     * @param table - таблица квадграмм
+     * @param parallelism - количество потоков перебора
+     * @param prefixLength - длина начала шифротекста для оценки ключей
+     */
+    public VigenereKeySearch(QuadgramTable table, int parallelism, int prefixLength) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Количество потоков должно быть положительным: " + parallelism);
+        }
+        if (prefixLength < 4) {
+            throw new IllegalArgumentException("Начало шифротекста должно содержать хотя бы 4 символа: " + prefixLength);
+        }
+        this.table = table;
+        this.parallelism = parallelism;
+        this.prefixLength = prefixLength;
+        initBounds();
+    }
+
+    private void initBounds() {
+        int size = CipherKernel.SIZE;
+        int size3 = size * size * size;
+        for (float[] bounds : new float[][]{prefixMax1, prefixMax2, prefixMax3, suffixMax1, suffixMax2, suffixMax3}) {
+            Arrays.fill(bounds, Float.NEGATIVE_INFINITY);
+        }
+        for (int key = 0; key < QuadgramTable.SIZE; key++) {
+            float score = table.score(key);
+            scores[key] = score;
+            int head = key / size;
+            int tail = key % size3;
+            if (score > prefixMax3[head]) {
+                prefixMax3[head] = score;
+            }
+            if (score > suffixMax3[tail]) {
+                suffixMax3[tail] = score;
+            }
+            if (score > globalMax) {
+                globalMax = score;
+            }
+        }
+        for (int i = 0; i < prefixMax3.length; i++) {
+            prefixMax2[i / size] = Math.max(prefixMax2[i / size], prefixMax3[i]);
+            suffixMax2[i % (size * size)] = Math.max(suffixMax2[i % (size * size)], suffixMax3[i]);
+        }
+        for (int i = 0; i < prefixMax2.length; i++) {
+            prefixMax1[i / size] = Math.max(prefixMax1[i / size], prefixMax2[i]);
+            suffixMax1[i % size] = Math.max(suffixMax1[i % size], suffixMax2[i]);
+        }
+    }
+
+    /**
+     * Полный перебор ключей длиной от 1 до maxLength.
+     *
+     * @param cipherText - шифротекст
+     * @param maxLength - наибольшая длина ключа, от 1 до MAX_EXHAUSTIVE_LENGTH
+     * @param top - количество лучших ключей в результате
+     * @param checkpoint - файл контрольной точки или null, чтобы не сохранять ход перебора
+     * @return Result - лучшие ключи и скорость перебора
+     */
+    public Result searchExhaustive(CharSequence cipherText, int maxLength, int top, Path checkpoint) {
+        if (maxLength < 1 || maxLength > MAX_EXHAUSTIVE_LENGTH) {
+            throw new IllegalArgumentException("Длина ключа для перебора должна быть от 1 до " + MAX_EXHAUSTIVE_LENGTH + ": " + maxLength);
+        }
+        Prefix prefix = new Prefix(cipherText, prefixLength);
+        TopList best = new TopList(top);
+        Progress progress = new Progress(totalKeys(maxLength));
+        Checkpoint state = new Checkpoint(checkpoint, prefix.fingerprint, maxLength);
+        state.load(best, progress);
+
+        // Статистические ключи сразу дают хорошую нижнюю границу для отсечения
+        for (int length = 1; length <= maxLength; length++) {
+            if (prefix.letters >= length) {
+                String key = VigenereKeyRefiner.refine(cipherText,
+                        VigenereCipherAnalyzer.findKey(cipherText.toString(), length), table);
+                if (!isPeriodic(CipherKernel.keyShifts(key, false))) {
+                    best.offer(key, prefix.score(CipherKernel.keyShifts(key, false), table));
+                }
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ScheduledExecutorService reporter = startReporter(progress);
+        try {
+            for (int length = 1; length <= maxLength; length++) {
+                int letters = Math.min(length, PARTITION_LETTERS);
+                int partitions = (int) pow(CipherKernel.SIZE, letters);
+                long partitionKeys = pow(CipherKernel.SIZE, length - letters);
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (int partition = 0; partition < partitions; partition++) {
+                    if (!state.isDone(length, partition)) {
+                        tasks.add(new PartitionTask(prefix, length, letters, partition, partitionKeys, best, progress, state));
+                    }
+                }
+                pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+                state.save(best, true);
+                LOGGER.info("Длина ключа " + length + " перебрана, лучший ключ: " + best.snapshot().get(0));
+            }
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+        }
+        Result result = new Result(best.snapshot(), progress.covered.sum(), progress.scored.sum(), System.nanoTime() - progress.startNanos);
+        LOGGER.info("Перебор завершен: " + result);
+        return result;
+    }
+
+    /**
+     * Перебор ключей из словаря.
+     *
+     * @param cipherText - шифротекст
+     * @param keys - ключи-кандидаты; ключи с символами вне алфавита пропускаются
+     * @param top - количество лучших ключей в результате
+     * @return Result - лучшие ключи и скорость перебора
+     */
+    public Result searchDictionary(CharSequence cipherText, List<String> keys, int top) {
+        Prefix prefix = new Prefix(cipherText, prefixLength);
+        TopList best = new TopList(top);
+        Progress progress = new Progress(keys.size());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ScheduledExecutorService reporter = startReporter(progress);
+        try {
+            pool.invoke(new DictionaryTask(prefix, keys, 0, keys.size(), best, progress));
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+        }
+        Result result = new Result(best.snapshot(), progress.covered.sum(), progress.scored.sum(), System.nanoTime() - progress.startNanos);
+        LOGGER.info("Перебор словаря завершен: " + result);
+        return result;
+    }
+
+    private ScheduledExecutorService startReporter(Progress progress) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "key-search-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(progress::log, PROGRESS_PERIOD_SECONDS, PROGRESS_PERIOD_SECONDS, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    private static long totalKeys(int maxLength) {
+        long total = 0;
+        for (int length = 1; length <= maxLength; length++) {
+            total += pow(CipherKernel.SIZE, length);
+        }
+        return total;
+    }
+
+    private static long pow(int base, int exp) {
+        long result = 1;
+        for (int i = 0; i < exp; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /** Ключ, который является повторением более короткого ключа */
+    static boolean isPeriodic(int[] key) {
+        for (int period = 1; period < key.length; period++) {
+            if (key.length % period != 0) {
+                continue;
+            }
+            boolean repeats = true;
+            for (int i = period; i < key.length && repeats; i++) {
+                repeats = key[i] == key[i - period];
+            }
+            if (repeats) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Начало шифротекста, подготовленное для оценки: индексы букв и квадграммы
+     * из четырех подряд идущих букв.
+     */
+    private static final class Prefix {
+        final byte[] cipher;
+        /** Позиции начала квадграмм */
+        final int[] windows;
+        final int letters;
+        /** Отпечаток начала шифротекста для проверки контрольной точки */
+        final long fingerprint;
+
+        Prefix(CharSequence cipherText, int prefixLength) {
+            cipher = EncodedText.indicesOf(cipherText, Math.min(prefixLength, cipherText.length()));
+            int count = 0;
+            int run = 0;
+            int letterCount = 0;
+            long hash = FNV_OFFSET;
+            int[] starts = new int[cipher.length];
+            for (int i = 0; i < cipher.length; i++) {
+                hash = (hash ^ (cipher[i] & 0xFF)) * FNV_PRIME;
+                if (cipher[i] >= 0) {
+                    letterCount++;
+                    if (++run >= 4) {
+                        starts[count++] = i - 3;
+                    }
+                } else {
+                    run = 0;
+                }
+            }
+            windows = Arrays.copyOf(starts, count);
+            letters = letterCount;
+            fingerprint = hash;
+        }
+
+        /** Точная оценка ключа */
+        double score(int[] key, QuadgramTable table) {
+            double sum = 0;
+            for (int start : windows) {
+                int gram = 0;
+                for (int t = 0; t < 4; t++) {
+                    int position = start + t;
+                    gram = gram * CipherKernel.SIZE + decrypt(cipher[position], key[position % key.length]);
+                }
+                sum += table.score(gram);
+            }
+            return sum;
+        }
+    }
+
+    private static int decrypt(int index, int shift) {
+        int value = index - shift;
+        return value < 0 ? value + CipherKernel.SIZE : value;
+    }
+
+    /**
+     * Список лучших ключей: min-куча по оценке, общая для всех потоков.
+     * Худшая оценка заполненного списка публикуется как порог отсечения.
+     */
+    private static final class TopList {
+        private final int capacity;
+        private final PriorityQueue<Candidate> heap =
+                new PriorityQueue<>(Comparator.comparingDouble(Candidate::getScore));
+        private final Set<String> keys = new HashSet<>();
+        private volatile double threshold = Double.NEGATIVE_INFINITY;
+
+        TopList(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Количество ключей в результате должно быть положительным: " + capacity);
+            }
+            this.capacity = capacity;
+        }
+
+        double threshold() {
+            return threshold;
+        }
+
+        synchronized void offer(String key, double score) {
+            if (keys.contains(key) || (heap.size() == capacity && score <= heap.peek().getScore())) {
+                return;
+            }
+            heap.add(new Candidate(key, score));
+            keys.add(key);
+            if (heap.size() > capacity) {
+                keys.remove(heap.poll().getKey());
+            }
+            if (heap.size() == capacity) {
+                threshold = heap.peek().getScore();
+            }
+        }
+
+        synchronized List<Candidate> snapshot() {
+            List<Candidate> result = new ArrayList<>(heap);
+            // Лучший первым; при равной оценке - более короткий ключ
+            result.sort(Comparator.comparingDouble((Candidate c) -> -c.getScore())
+                    .thenComparingInt(c -> c.getKey().length()).thenComparing(Candidate::getKey));
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    /**
+     * Счетчики хода перебора и вывод скорости и оставшегося времени.
+     */
+    private static final class Progress {
+        final long total;
+        final long startNanos = System.nanoTime();
+        final LongAdder covered = new LongAdder();
+        final LongAdder scored = new LongAdder();
+        /** Ключи, проверенные в прошлых запусках (по контрольной точке) */
+        long resumed;
+
+        Progress(long total) {
+            this.total = total;
+        }
+
+        void log() {
+            long done = covered.sum();
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            double rate = seconds > 0 ? done / seconds : 0;
+            long left = Math.max(0, total - resumed - done);
+            LOGGER.info(String.format(Locale.ROOT, "Перебор: %.2f%%, %.0f ключей/с, осталось около %s",
+                    100.0 * (resumed + done) / total, rate, rate > 0 ? formatSeconds(left / rate) : "?"));
+        }
+
+        private static String formatSeconds(double seconds) {
+            long s = (long) seconds;
+            return String.format("%d:%02d:%02d", s / 3600, s / 60 % 60, s % 60);
+        }
+    }
+
+    /**
+     * Часть перебора ключей одной длины с фиксированными первыми буквами.
+     * Обходит дерево ключей в глубину, поддерживая верхнюю границу оценки
+     * инкрементально: при назначении буквы пересчитываются только квадграммы,
+     * которые она расшифровывает.
+     */
+    @SuppressWarnings("serial") // задачи ForkJoinPool не сериализуются
+    private final class PartitionTask extends RecursiveAction {
+        private final Prefix prefix;
+        private final int length;
+        private final int fixedLetters;
+        private final int partition;
+        private final long partitionKeys;
+        private final TopList best;
+        private final Progress progress;
+        private final Checkpoint checkpoint;
+
+        private final int[] key;
+        /** Позиции ключа и индексы шифротекста четырех букв каждой квадграммы (по 4 подряд) */
+        private int[] windowPhases;
+        private int[] windowLetters;
+        /** Квадграммы по позициям ключа, буквы которых они содержат */
+        private int[][] windowsByPhase;
+        /** Текущий вклад каждой квадграммы в верхнюю границу */
+        private float[] contribution;
+        /** Сохраненные вклады для отката по глубинам */
+        private float[][] undo;
+        private double bound;
+        /** 33^(length - depth - 1): ключей в поддереве после назначения буквы на глубине depth */
+        private final long[] subtreeKeys;
+
+        PartitionTask(Prefix prefix, int length, int fixedLetters, int partition, long partitionKeys,
+                      TopList best, Progress progress, Checkpoint checkpoint) {
+            this.prefix = prefix;
+            this.length = length;
+            this.fixedLetters = fixedLetters;
+            this.partition = partition;
+            this.partitionKeys = partitionKeys;
+            this.best = best;
+            this.progress = progress;
+            this.checkpoint = checkpoint;
+            this.key = new int[length];
+            this.subtreeKeys = new long[length];
+            for (int depth = 0; depth < length; depth++) {
+                subtreeKeys[depth] = pow(CipherKernel.SIZE, length - depth - 1);
+            }
+        }
+
+        @Override
+        protected void compute() {
+            prepare();
+            int remaining = partition;
+            for (int depth = fixedLetters - 1; depth >= 0; depth--) {
+                key[depth] = remaining % CipherKernel.SIZE;
+                remaining /= CipherKernel.SIZE;
+            }
+            for (int depth = 0; depth < fixedLetters; depth++) {
+                assign(depth, key[depth]);
+            }
+            if (fixedLetters == length) {
+                leaf();
+            } else if (best.threshold() < bound) {
+                search(fixedLetters);
+            } else {
+                progress.covered.add(partitionKeys);
+            }
+            checkpoint.markDone(length, partition, best);
+        }
+
+        private void prepare() {
+            int windowCount = prefix.windows.length;
+            contribution = new float[windowCount];
+            Arrays.fill(contribution, globalMax);
+            bound = (double) globalMax * windowCount;
+            windowPhases = new int[windowCount * 4];
+            windowLetters = new int[windowCount * 4];
+            for (int w = 0; w < windowCount; w++) {
+                for (int t = 0; t < 4; t++) {
+                    windowPhases[w * 4 + t] = (prefix.windows[w] + t) % length;
+                    windowLetters[w * 4 + t] = prefix.cipher[prefix.windows[w] + t];
+                }
+            }
+            int[] perPhase = new int[length];
+            boolean[] seen = new boolean[length];
+            for (int start : prefix.windows) {
+                for (int t = 0; t < 4; t++) {
+                    int phase = (start + t) % length;
+                    if (!seen[phase]) {
+                        seen[phase] = true;
+                        perPhase[phase]++;
+                    }
+                }
+                Arrays.fill(seen, false);
+            }
+            windowsByPhase = new int[length][];
+            undo = new float[length][];
+            for (int phase = 0; phase < length; phase++) {
+                windowsByPhase[phase] = new int[perPhase[phase]];
+                undo[phase] = new float[perPhase[phase]];
+                perPhase[phase] = 0;
+            }
+            for (int w = 0; w < windowCount; w++) {
+                int start = prefix.windows[w];
+                for (int t = 0; t < 4; t++) {
+                    int phase = (start + t) % length;
+                    if (!seen[phase]) {
+                        seen[phase] = true;
+                        windowsByPhase[phase][perPhase[phase]++] = w;
+                    }
+                }
+                Arrays.fill(seen, false);
+            }
+        }
+
+        private void search(int depth) {
+            for (int letter = 0; letter < CipherKernel.SIZE; letter++) {
+                assign(depth, letter);
+                if (depth == length - 1) {
+                    leaf();
+                } else if (best.threshold() < bound) {
+                    search(depth + 1);
+                } else {
+                    // Вся ветвь не лучше худшего из найденных ключей
+                    progress.covered.add(subtreeKeys[depth]);
+                }
+                revert(depth);
+            }
+        }
+
+        private void leaf() {
+            progress.covered.increment();
+            progress.scored.increment();
+            if (bound > best.threshold() && !isPeriodic(key)) {
+                char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    chars[i] = CipherKernel.charAt(key[i]);
+                }
+                best.offer(new String(chars), bound);
+            }
+        }
+
+        /** Назначает букву позиции ключа depth (известны позиции 0..depth) */
+        private void assign(int depth, int letter) {
+            key[depth] = letter;
+            int[] windows = windowsByPhase[depth];
+            float[] saved = undo[depth];
+            for (int i = 0; i < windows.length; i++) {
+                int w = windows[i];
+                float old = contribution[w];
+                saved[i] = old;
+                float updated = windowBound(w * 4, depth + 1);
+                contribution[w] = updated;
+                bound += updated - old;
+            }
+        }
+
+        private void revert(int depth) {
+            int[] windows = windowsByPhase[depth];
+            float[] saved = undo[depth];
+            for (int i = 0; i < windows.length; i++) {
+                int w = windows[i];
+                bound += saved[i] - contribution[w];
+                contribution[w] = saved[i];
+            }
+        }
+
+        /**
+         * Верхняя граница оценки квадграммы, когда известны позиции ключа 0..known-1.
+         * Используется самый длинный известный префикс или суффикс квадграммы.
+         */
+        private float windowBound(int base, int known) {
+            int prefixKnown = 0;
+            int head = 0;
+            while (prefixKnown < 4 && windowPhases[base + prefixKnown] < known) {
+                head = head * CipherKernel.SIZE + letterAt(base + prefixKnown);
+                prefixKnown++;
+            }
+            if (prefixKnown == 4) {
+                return scores[head];
+            }
+            int suffixKnown = 0;
+            while (suffixKnown < 3 && windowPhases[base + 3 - suffixKnown] < known) {
+                suffixKnown++;
+            }
+            if (prefixKnown == 0 && suffixKnown == 0) {
+                return globalMax;
+            }
+            if (prefixKnown >= suffixKnown) {
+                return prefixKnown == 1 ? prefixMax1[head] : prefixKnown == 2 ? prefixMax2[head] : prefixMax3[head];
+            }
+            int tail = 0;
+            for (int t = 4 - suffixKnown; t < 4; t++) {
+                tail = tail * CipherKernel.SIZE + letterAt(base + t);
+            }
+            return suffixKnown == 1 ? suffixMax1[tail] : suffixKnown == 2 ? suffixMax2[tail] : suffixMax3[tail];
+        }
+
+        /** Буква открытого текста квадграммы; позиция ключа для нее уже назначена */
+        private int letterAt(int slot) {
+            return decrypt(windowLetters[slot], key[windowPhases[slot]]);
+        }
+    }
+
+    /**
+     * Оценка диапазона ключей словаря; делится пополам, пока диапазон большой.
+     */
+    @SuppressWarnings("serial") // задачи ForkJoinPool не сериализуются
+    private final class DictionaryTask extends RecursiveAction {
+        private static final int CHUNK = 256;
+        private final Prefix prefix;
+        private final List<String> keys;
+        private final int from;
+        private final int to;
+        private final TopList best;
+        private final Progress progress;
+
+        DictionaryTask(Prefix prefix, List<String> keys, int from, int to, TopList best, Progress progress) {
+            this.prefix = prefix;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+            this.best = best;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DictionaryTask(prefix, keys, from, middle, best, progress),
+                        new DictionaryTask(prefix, keys, middle, to, best, progress));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                String key = keys.get(i).trim().toUpperCase();
+                progress.covered.increment();
+                int[] shifts;
+                try {
+                    shifts = CipherKernel.keyShifts(key, false);
+                } catch (IllegalArgumentException e) {
+                    continue; // Пустая строка или символы вне алфавита
+                }
+                progress.scored.increment();
+                best.offer(key, prefix.score(shifts, table));
+            }
+        }
+    }
+
+    /**
+     * Контрольная точка: завершенные части перебора и текущий список лучших ключей.
+     * Текстовый файл: заголовок, отпечаток шифротекста, длина начала и наибольшая
+     * длина ключа, затем строки "done длина часть" и "top оценка ключ".
+     */
+    private final class Checkpoint {
+        private final Path file;
+        private final long fingerprint;
+        private final int maxLength;
+        private final Set<Long> done = new HashSet<>();
+        private long lastSave;
+
+        Checkpoint(Path file, long fingerprint, int maxLength) {
+            this.file = file;
+            this.fingerprint = fingerprint;
+            this.maxLength = maxLength;
+        }
+
+        private String header() {
+            return CHECKPOINT_HEADER + " " + Long.toHexString(fingerprint) + " " + prefixLength + " " + maxLength;
+        }
+
+        private long id(int length, int partition) {
+            return ((long) length << 32) | partition;
+        }
+
+        synchronized boolean isDone(int length, int partition) {
+            return done.contains(id(length, partition));
+        }
+
+        void load(TopList best, Progress progress) {
+            if (file == null || !Files.exists(file)) {
+                return;
+            }
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                if (lines.isEmpty() || !lines.get(0).equals(header())) {
+                    LOGGER.warning("Контрольная точка относится к другому перебору и не используется: " + file);
+                    return;
+                }
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] parts = line.split(" ");
+                    if (parts[0].equals("done")) {
+                        int length = Integer.parseInt(parts[1]);
+                        done.add(id(length, Integer.parseInt(parts[2])));
+                        progress.resumed += pow(CipherKernel.SIZE, length - Math.min(length, PARTITION_LETTERS));
+                    } else if (parts[0].equals("top")) {
+                        best.offer(parts[2], Double.parseDouble(parts[1]));
+                    }
+                }
+                LOGGER.info("Перебор продолжается с контрольной точки: завершено частей " + done.size());
+            } catch (IOException | RuntimeException e) {
+                throw new RuntimeException("Ошибка чтения контрольной точки: " + file, e);
+            }
+        }
+
+        void markDone(int length, int partition, TopList best) {
+            synchronized (this) {
+                done.add(id(length, partition));
+            }
+            save(best, false);
+        }
+
+        synchronized void save(TopList best, boolean force) {
+            long now = System.currentTimeMillis();
+            if (file == null || (!force && now - lastSave < CHECKPOINT_PERIOD_MILLIS)) {
+                return;
+            }
+            lastSave = now;
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(header());
+                writer.newLine();
+                for (long id : done) {
+                    writer.write("done " + (id >>> 32) + " " + (int) id);
+                    writer.newLine();
+                }
+                for (Candidate candidate : best.snapshot()) {
+                    writer.write("top " + candidate.getScore() + " " + candidate.getKey());
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка записи контрольной точки: " + file, e);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка записи контрольной точки: " + file, e);
+            }
+        }
+    }
+}
\ No newline at end of file